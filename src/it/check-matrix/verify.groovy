@@ -0,0 +1,27 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+matrix = new File( basedir, 'target/clirr-matrix.txt' ).readLines();
+assert matrix.size() == 4;
+assert matrix[0].startsWith( 'Version' );
+// 1.2 no longer has removed()
+assert matrix[1].split( /\s+/ )[0..1] == [ '1.0', '2' ];
+assert matrix[2].split( /\s+/ )[0..1] == [ '1.1', '2' ];
+assert matrix[3].split( /\s+/ )[0..1] == [ '1.2', '1' ];
+
+return true;
@@ -0,0 +1,8 @@
+package api;
+
+public class Api {
+
+    public void kept() {
+
+    }
+}
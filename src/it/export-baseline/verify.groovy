@@ -0,0 +1,30 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+bundle = new File( basedir, 'target/clirr-baseline.zip' );
+assert bundle.isFile();
+
+buildLog = new File( basedir, 'build.log' ).text;
+assert buildLog.contains( 'Exported version 1.0 with 0 dependencies' );
+
+// the differences against 1.0, read from the bundle
+results = new File( basedir, 'target/clirr.txt' ).text;
+assert results.contains( "Method 'public void used()' has been removed" );
+assert results.contains( "Method 'public void removed()' has been removed" );
+
+return true;
@@ -0,0 +1,16 @@
+package api;
+
+public class Api {
+
+    public void kept() {
+
+    }
+
+    public void used() {
+
+    }
+
+    public void removed() {
+
+    }
+}
@@ -0,0 +1,12 @@
+package api;
+
+public class Api {
+
+    public void kept() {
+
+    }
+
+    public void used() {
+
+    }
+}
@@ -0,0 +1,11 @@
+package consumer;
+
+import api.Api;
+
+public class Consumer {
+
+    public void run(Api api) {
+        api.kept();
+        api.used();
+    }
+}
@@ -16,9 +16,9 @@ package org.codehaus.mojo.clirr;
  * limitations under the License.
  */
 
+import java.io.File;
 import java.util.Locale;
 
-import net.sf.clirr.core.ApiDifference;
 import net.sf.clirr.core.Severity;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
@@ -51,6 +51,45 @@ public class AbstractClirrCheckMojo extends AbstractClirrMojo {
      */
     private boolean failOnInfo;
 
+    /**
+     * Whether to stop comparing classes after the first class with an error. Only used when
+     * <code>failOnError</code> is set, since the build fails anyway; the classes which had errors in the
+     * previous run are compared first. The reports then only contain the differences found up to that point.
+     *
+     * @parameter property="clirr.failFast" default-value="false"
+     * @since 2.9
+     */
+    private boolean failFast;
+
+    /**
+     * The number of errors to stop comparing classes at, like <code>failFast</code> for more than one error.
+     * 0 compares all classes.
+     *
+     * @parameter property="clirr.maxErrors" default-value="0"
+     * @since 2.9
+     */
+    private int maxErrors;
+
+    /**
+     * Whether to only count the differences, without keeping them in memory, which suits large comparisons that
+     * only gate the build. The differences which fail the build are then only listed with <code>logResults</code>,
+     * which lists them as they are found.
+     *
+     * @parameter property="clirr.countsOnly" default-value="false"
+     * @since 2.9
+     */
+    private boolean countsOnly;
+
+    /**
+     * The file which keeps the names of the classes which had errors, so that the next run with
+     * <code>failFast</code> or <code>maxErrors</code> compares them first. It is neither read nor written when
+     * the comparison does not stop at a number of errors.
+     *
+     * @parameter default-value="${project.build.directory}/clirr-errors.txt"
+     * @since 2.9
+     */
+    private File errorHintFile;
+
     /**
      * @component
      */
@@ -118,13 +157,33 @@ public class AbstractClirrCheckMojo extends AbstractClirrMojo {
         getLog().info(i18n.format("clirr-report", locale, "check.clirr.success", args));
     }
 
+    protected int getMaxErrors() {
+        return failOnError ? (failFast ? 1 : maxErrors) : 0;
+    }
+
+    protected File getErrorHintFile() {
+        return errorHintFile;
+    }
+
+    protected boolean isCountsOnly() {
+        return countsOnly;
+    }
+
     private void log(ClirrDiffListener listener, Severity severity) {
+        // logResults has listed them already
         if (!logResults) {
+            if (listener.isCountsOnly()) {
+                getLog().info("Only the numbers of differences have been kept, use logResults to list them");
+                return;
+            }
             LogDiffListener l = new LogDiffListener(getLog());
-            for (ApiDifference difference : listener.getApiDifferences()) {
-                if (difference.getMaximumSeverity().equals(severity)) {
-                    l.reportDiff(difference);
+            DifferenceStore.Cursor differences = listener.openDifferences(severity);
+            try {
+                while (differences.hasNext()) {
+                    l.reportDiff(differences.next());
                 }
+            } finally {
+                differences.close();
             }
         }
     }
@@ -17,9 +17,7 @@ package org.codehaus.mojo.clirr;
  */
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
@@ -30,21 +28,17 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
-import net.sf.clirr.core.Checker;
-import net.sf.clirr.core.CheckerException;
+import net.sf.clirr.core.ApiDifference;
 import net.sf.clirr.core.ClassFilter;
 import net.sf.clirr.core.DiffListener;
-import net.sf.clirr.core.PlainDiffListener;
 import net.sf.clirr.core.Severity;
-import net.sf.clirr.core.internal.bcel.BcelJavaType;
-import net.sf.clirr.core.internal.bcel.BcelTypeArrayBuilder;
 import net.sf.clirr.core.spi.JavaType;
-import org.apache.bcel.classfile.ClassParser;
-import org.apache.bcel.classfile.JavaClass;
-import org.apache.bcel.util.ClassLoaderRepository;
-import org.apache.bcel.util.Repository;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.factory.ArtifactFactory;
 import org.apache.maven.artifact.metadata.ArtifactMetadataRetrievalException;
@@ -65,11 +59,10 @@ import org.apache.maven.project.MavenProject;
 import org.apache.maven.project.MavenProjectBuilder;
 import org.apache.maven.project.ProjectBuildingException;
 import org.apache.maven.project.artifact.InvalidDependencyVersionException;
-import org.codehaus.plexus.util.DirectoryScanner;
-import org.codehaus.plexus.util.IOUtil;
-import org.codehaus.plexus.util.ReaderFactory;
-import org.codehaus.plexus.util.xml.XmlStreamReader;
-import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+import org.codehaus.plexus.util.FileUtils;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.repository.RemoteRepository;
 
 /**
  * Base parameters for Clirr check and report.
@@ -120,6 +113,23 @@ public abstract class AbstractClirrMojo extends AbstractMojo {
      */
     private MavenProjectBuilder mavenProjectBuilder;
 
+    /**
+     * @component
+     */
+    private RepositorySystem repositorySystem;
+
+    /**
+     * @parameter default-value="${repositorySystemSession}"
+     * @readonly
+     */
+    private RepositorySystemSession repositorySession;
+
+    /**
+     * @parameter default-value="${project.remoteProjectRepositories}"
+     * @readonly
+     */
+    private List<RemoteRepository> remoteProjectRepositories;
+
     /**
      * The classes of this project to compare the last release against.
      *
@@ -216,6 +226,17 @@ public abstract class AbstractClirrMojo extends AbstractMojo {
      */
     protected File ignoredDifferencesFile;
 
+    /**
+     * Further files containing ignored differences, in the format of the "ignoredDifferencesFile" parameter, or
+     * directories whose XML files contain them. The differences of all files are joined with the others, in the
+     * order of the files, and those of a directory in the order of their paths. The files are read concurrently,
+     * and a file which several modules of a build use is only read once.
+     *
+     * @parameter property="clirr.ignoredDifferencesFiles"
+     * @since 2.9
+     */
+    protected File[] ignoredDifferencesFiles;
+
     /**
      * Whether to log the results to the console or not.
      *
@@ -228,13 +249,204 @@ public abstract class AbstractClirrMojo extends AbstractMojo {
      */
     private boolean skipArtifactTypeTest;
 
+    /**
+     * A baseline bundle, as created by the <code>export-baseline</code> goal, to compare the current code against.
+     * If present, the previous version and its dependencies are taken from the bundle and no artifacts are resolved
+     * from any repository, so this overrides both <code>comparisonVersion</code> and
+     * <code>comparisonArtifacts</code>.
+     *
+     * @parameter property="clirr.baselineBundle"
+     * @since 2.9
+     */
+    protected File baselineBundle;
+
+    /**
+     * The directory the <code>baselineBundle</code> is extracted to.
+     *
+     * @parameter default-value="${project.build.directory}/clirr-baseline"
+     * @since 2.9
+     */
+    private File baselineBundleDirectory;
+
+    /**
+     * Whether to resolve the previous version and its dependencies with the Maven 2 artifact resolver instead
+     * of the repository system of the running build. The repository system collects dependencies in parallel
+     * and shares its caches with the rest of the build, so this is only meant as a fallback.
+     *
+     * @parameter property="clirr.legacyResolution" default-value="false"
+     * @since 2.9
+     */
+    private boolean legacyResolution;
+
+    /**
+     * The number of threads to compare the classes with. The classes are split into partitions of whole
+     * packages, which are compared concurrently; the reported differences are the same as with a single
+     * thread, and in the same order. The threads are shared with all other executions of the plugin in the
+     * build, so that building modules concurrently does not multiply them. Defaults to the number of modules
+     * Maven builds at once, as set with <code>-T</code>.
+     *
+     * @parameter property="clirr.threads" default-value="${session.request.degreeOfConcurrency}"
+     * @since 2.9
+     */
+    protected int threads;
+
+    /**
+     * Whether to stream the classes instead of reading all of them up front. The classes of both versions are
+     * then read, compared and released one pair at a time, in a single thread, so that the memory needed no
+     * longer grows with the size of the compared artifacts. This overrides <code>threads</code>.
+     *
+     * @parameter property="clirr.streaming" default-value="false"
+     * @since 2.9
+     */
+    protected boolean streaming;
+
+    /**
+     * The engine to compare the classes with: <code>clirr</code> runs the checks of Clirr as they are, while
+     * <code>indexed</code> matches the fields and methods of each class through hash indexes and only hands
+     * those which have changed to the checks of Clirr. Both report the same differences.
+     *
+     * @parameter property="clirr.engine" default-value="clirr"
+     * @since 2.9
+     */
+    protected String engine;
+
+    /**
+     * The artifacts of the known consumers of the library. When consumers are given, either as artifacts or as
+     * <code>consumerFiles</code>, only the classes and members which they reference are compared, along with the
+     * superclasses and interfaces of those classes; classes which a consumer extends or implements are compared
+     * as a whole. The constant fields of the compared classes are always compared, since the compiler inlines
+     * them into the consumers. Each <code>consumerArtifact</code> is specified like a
+     * <code>comparisonArtifact</code>.
+     *
+     * @parameter
+     * @since 2.9
+     */
+    protected ArtifactSpecification[] consumerArtifacts;
+
+    /**
+     * The jar files and classes directories of the known consumers of the library, see
+     * <code>consumerArtifacts</code>.
+     *
+     * @parameter property="clirr.consumerFiles"
+     * @since 2.9
+     */
+    protected File[] consumerFiles;
+
+    /**
+     * Whether to only compare the classes which have changed since the previous comparison, and to take over what
+     * the previous comparison found for all other classes. A class is compared again when its class file has
+     * changed, which is checked for the classes the compiler wrote according to its incremental build state, or
+     * when one of its superclasses, interfaces or enclosing classes is compared again. Everything is compared again
+     * when anything else the comparison depends on has changed, such as the previous version, the dependencies or
+     * the configuration. The classes are streamed, see <code>streaming</code>.
+     *
+     * @parameter property="clirr.incremental" default-value="false"
+     * @since 2.9
+     */
+    protected boolean incremental;
+
+    /**
+     * The file to keep the state of the previous comparison in, for <code>incremental</code>.
+     *
+     * @parameter default-value="${project.build.directory}/clirr-incremental.txt"
+     * @since 2.9
+     */
+    protected File incrementalStateFile;
+
+    /**
+     * How to compare the classes: <code>serial</code> reads all classes up front and compares them in a single
+     * thread, <code>parallel</code> does so with <code>threads</code> threads, or one per processor,
+     * <code>streaming</code> works as described for <code>streaming</code> and <code>cached</code> as described
+     * for <code>incremental</code>. With <code>auto</code>, setting <code>incremental</code> or <code>streaming</code>
+     * picks the respective strategy; otherwise the strategy is chosen from the number and size of the class files,
+     * the number of dependencies, the heap and how long the last comparison of all classes took, using at most
+     * <code>threads</code> threads, if more than one; <code>cached</code> is never chosen that way. The strategy
+     * and the reason for it are logged.
+     *
+     * @parameter property="clirr.strategy" default-value="auto"
+     * @since 2.9
+     */
+    protected String strategy;
+
+    /**
+     * The file to keep the duration of the last comparison of all classes in, for the <code>auto</code>
+     * <code>strategy</code>, or empty, to not keep it. A file which cannot be written is only warned about.
+     *
+     * @parameter default-value="${project.build.directory}/clirr-timings.txt"
+     * @since 2.9
+     */
+    protected File timingsFile;
+
+    /**
+     * The file to write how often each ignored difference was matched against the reported differences, how often
+     * it matched and how long that took. Ignored differences which did not match anything are marked as
+     * <code>unmatched</code>, so that those which are no longer needed can be found and removed. The ignored
+     * differences are only counted when this is set.
+     *
+     * @parameter property="clirr.ruleStatisticsFile"
+     * @since 2.9
+     */
+    protected File ruleStatisticsFile;
+
+    /**
+     * The heap the comparison may use, such as <code>1g</code> or <code>512m</code>. Classes which would not fit
+     * into it are streamed rather than read up front, see <code>streaming</code>. When the heap in use approaches
+     * it while comparing, the classes which have been read for the hierarchies of the compared classes are let go,
+     * to be read again when needed, and the differences found so far are moved to files in the build directory,
+     * which are deleted once the results have been used. By default, no budget is kept.
+     *
+     * @parameter property="clirr.memoryBudget"
+     * @since 2.9
+     */
+    protected String memoryBudget;
+
+    /**
+     * The number of differences to keep in memory at most. Further differences are moved to files in the build
+     * directory, from which the reports and the logs read them back, one at a time. 0 keeps all differences in
+     * memory, unless the heap runs short, see <code>memoryBudget</code>.
+     *
+     * @parameter property="clirr.maxDifferencesInMemory" default-value="100000"
+     * @since 2.9
+     */
+    protected int maxDifferencesInMemory;
+
+    /**
+     * The number of differences the XML file, the text file and the log may each have waiting, when they are
+     * written on threads of their own, so that a slow disk or console does not hold up the comparison. They have
+     * been written completely before the results are checked. 0 writes them on the comparing thread.
+     *
+     * @parameter property="clirr.outputQueueSize" default-value="0"
+     * @since 2.9
+     */
+    protected int outputQueueSize;
+
+    private HeapGovernor governor;
+
+    /**
+     * The listeners which collect the differences of this execution, see {@link #createResultListener(boolean)}.
+     */
+    private final List<ClirrDiffListener> results = Collections.synchronizedList(new ArrayList<ClirrDiffListener>());
+
+    /**
+     * The usage index of the consumers, once {@link #getUsageIndex()} has read it.
+     */
+    private UsageIndex usageIndex;
+
+    private boolean usageIndexRead;
+
+    private RepositorySystemResolver repositorySystemResolver;
+
     private static final URL[] EMPTY_URL_ARRAY = new URL[0];
 
     public void execute() throws MojoExecutionException, MojoFailureException {
         if (skip) {
             getLog().info("Skipping execution");
         } else {
-            doExecute();
+            try {
+                doExecute();
+            } finally {
+                disposeResults();
+            }
         }
     }
 
@@ -245,16 +457,31 @@ public abstract class AbstractClirrMojo extends AbstractMojo {
     }
 
     protected ClirrDiffListener executeClirr(Severity minSeverity) throws MojoExecutionException, MojoFailureException {
-        ClirrDiffListener listener = new ClirrDiffListener();
+        ClirrDiffListener listener = createResultListener(isCountsOnly());
 
         ClassFilter classFilter = new ClirrClassFilter(includes, excludes);
 
-        JavaType[] origClasses = resolvePreviousReleaseClasses(classFilter);
+        ClassSource origClasses = resolvePreviousReleaseClasses(classFilter);
+        try {
+            ClassSource currentClasses = resolveCurrentClasses(classFilter);
+            try {
+                executeClirr(listener, minSeverity, origClasses, currentClasses);
+            } finally {
+                currentClasses.close();
+            }
+        } finally {
+            origClasses.close();
+        }
 
-        JavaType[] currentClasses = resolveCurrentClasses(classFilter);
+        return listener;
+    }
 
-        // Create a Clirr checker and execute
-        Checker checker = new Checker();
+    private void executeClirr(
+            ClirrDiffListener listener, Severity minSeverity, ClassSource origClasses, ClassSource currentClasses)
+            throws MojoExecutionException {
+        governor = createHeapGovernor(listener, origClasses, currentClasses);
+        ExecutionStrategy strategy = getExecutionStrategy(origClasses, currentClasses);
+        getLog().info("Comparing with the " + strategy + " strategy: " + strategy.getReason());
 
         List<DiffListener> listeners = new ArrayList<DiffListener>();
 
@@ -271,7 +498,7 @@ public abstract class AbstractClirrMojo extends AbstractMojo {
 
         if (textOutputFile != null) {
             try {
-                listeners.add(new PlainDiffListener(textOutputFile.getAbsolutePath()));
+                listeners.add(new TextDiffListener(textOutputFile.getAbsolutePath()));
             } catch (IOException e) {
                 throw new MojoExecutionException(
                         "Error adding '" + textOutputFile + "' for output: " + e.getMessage(), e);
@@ -282,122 +509,601 @@ public abstract class AbstractClirrMojo extends AbstractMojo {
             listeners.add(new LogDiffListener(getLog()));
         }
 
-        checker.addDiffListener(new DelegatingListener(listeners, minSeverity, getAllIgnored()));
+        DelegatingListener delegatingListener = new DelegatingListener(listeners, minSeverity, getAllIgnored());
+        delegatingListener.setStatisticsFile(ruleStatisticsFile, getLog());
+        delegatingListener.setQueueSize(outputQueueSize);
+        long start = System.currentTimeMillis();
+        if (ExecutionStrategy.CACHED.equals(strategy.getName())) {
+            executeIncrementally(delegatingListener, listener, minSeverity, origClasses, currentClasses);
+            logStatistics(delegatingListener);
+            return;
+        }
+        JavaType[][] classes = null;
+        if (!ExecutionStrategy.STREAMING.equals(strategy.getName())) {
+            classes = readClasses(origClasses, currentClasses, strategy.getThreads());
+            if (classes == null) {
+                getLog().info("The classes do not fit into the heap budget of "
+                        + HeapGovernor.toMegabytes(governor.getBudget()) + " MB, streaming them instead");
+                origClasses.evict();
+                currentClasses.evict();
+            }
+        }
+        if (classes == null) {
+            ApiChecker checker = createChecker(delegatingListener, listener, 1, minSeverity);
+            checker.reportDiffs(origClasses, currentClasses);
+            afterCheck(checker, listener);
+        } else {
+            reportDiffs(delegatingListener, listener, minSeverity, classes[0], classes[1], strategy.getThreads());
+        }
+        logStatistics(delegatingListener);
 
-        reportDiffs(checker, origClasses, currentClasses);
+        if (timingsFile != null) {
+            long classCount = origClasses.getClassNames().size()
+                    + currentClasses.getClassNames().size();
+            try {
+                ExecutionStrategy.writeTiming(
+                        timingsFile,
+                        new ExecutionStrategy.Timing(
+                                strategy.getName(), classCount, System.currentTimeMillis() - start));
+            } catch (IOException e) {
+                // the timing only helps to choose the strategy next time
+                getLog().warn("Unable to write the timing of the comparison to '" + timingsFile + "': "
+                        + e.getMessage());
+            }
+        }
+    }
 
-        return listener;
+    /**
+     * Reads the classes of both versions, with more than one thread at the same time.
+     *
+     * @return the previous and the current classes, or null, if they do not fit into the heap budget
+     */
+    private JavaType[][] readClasses(final ClassSource origClasses, ClassSource currentClasses, int threads)
+            throws MojoExecutionException {
+        long origBytes = origClasses.getByteCount() * ExecutionStrategy.MODEL_BYTES_PER_CLASS_FILE_BYTE;
+        long currentBytes = currentClasses.getByteCount() * ExecutionStrategy.MODEL_BYTES_PER_CLASS_FILE_BYTE;
+        if (threads == 1) {
+            // the previous classes may have taken more than estimated
+            if (!fitsBudget(origBytes + currentBytes)) {
+                return null;
+            }
+            JavaType[] orig = origClasses.toArray();
+            if (!fitsBudget(currentBytes)) {
+                return null;
+            }
+            return new JavaType[][] {orig, currentClasses.toArray()};
+        }
+        if (!fitsBudget(origBytes + currentBytes)) {
+            return null;
+        }
+        Scheduler.Window<JavaType[]> window = Scheduler.window(threads, 1);
+        window.submit(new Callable<JavaType[]>() {
+            public JavaType[] call() {
+                return origClasses.toArray();
+            }
+        });
+        try {
+            JavaType[] current = currentClasses.toArray();
+            return new JavaType[][] {window.take(), current};
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while reading the previous classes", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new MojoExecutionException(
+                    "Error reading the previous classes: " + e.getCause().getMessage(), e);
+        } finally {
+            window.cancel();
+        }
     }
 
-    protected List<Difference> getAllIgnored() {
-        Difference[] ret = ignored;
+    private boolean fitsBudget(long bytes) {
+        return governor == null || governor.fits(bytes);
+    }
 
-        if (ignoredDifferencesFile != null && ignoredDifferencesFile.exists()) {
-            XmlStreamReader rdr = null;
-            try {
-                rdr = ReaderFactory.newXmlReader(ignoredDifferencesFile);
+    /**
+     * @return the directory the differences are moved to when there are too many of them, or the heap runs short
+     */
+    protected File getSpillDirectory() {
+        return new File(project.getBuild().getDirectory(), "clirr-spill");
+    }
 
-                Difference[] diffs = Difference.parseXml(rdr);
+    /**
+     * Creates the listener which collects the differences of a comparison, which moves them to files past
+     * <code>maxDifferencesInMemory</code>, and which is let go of by {@link #disposeResults()}.
+     *
+     * @param countsOnly whether to only count the differences
+     */
+    protected ClirrDiffListener createResultListener(boolean countsOnly) {
+        ClirrDiffListener listener = new ClirrDiffListener(countsOnly);
+        listener.setSpillThreshold(getSpillDirectory(), maxDifferencesInMemory);
+        results.add(listener);
+        return listener;
+    }
 
-                int ignoredLength = ignored == null ? 0 : ignored.length;
+    /**
+     * Lets go of the differences of the listeners of {@link #createResultListener(boolean)} and deletes the files
+     * they have been moved to, once the results of the comparisons have been used.
+     */
+    protected void disposeResults() {
+        synchronized (results) {
+            for (ClirrDiffListener listener : results) {
+                listener.close();
+            }
+            results.clear();
+        }
+        File directory = getSpillDirectory();
+        try {
+            FileUtils.deleteDirectory(directory);
+        } catch (IOException e) {
+            getLog().warn("Unable to delete " + directory + ": " + e.getMessage());
+        }
+    }
 
-                Difference[] tmp = new Difference[ignoredLength + diffs.length];
+    /**
+     * Creates the governor which keeps the comparison within <code>memoryBudget</code>, letting go of the cached
+     * classes of both versions and moving the collected differences to files when the heap runs short.
+     *
+     * @return the governor, or null, if no budget is set
+     */
+    private HeapGovernor createHeapGovernor(
+            final ClirrDiffListener listener, final ClassSource origClasses, final ClassSource currentClasses)
+            throws MojoExecutionException {
+        if (memoryBudget == null || memoryBudget.trim().length() == 0) {
+            return null;
+        }
+        long budget;
+        try {
+            budget = Math.min(
+                    HeapGovernor.parseSize(memoryBudget), Runtime.getRuntime().maxMemory());
+        } catch (NumberFormatException e) {
+            throw new MojoExecutionException(
+                    "Invalid memory budget '" + memoryBudget + "', use for instance " + "'512m' or '2g'");
+        }
 
-                if (ignored != null) {
-                    System.arraycopy(ignored, 0, tmp, 0, ignoredLength);
+        HeapGovernor governor = new HeapGovernor(budget, getLog());
+        governor.addReclaimer(new HeapGovernor.Reclaimer() {
+            public String reclaim() {
+                int count = origClasses.evict() + currentClasses.evict();
+                return count == 0 ? null : "let go of " + count + " cached classes";
+            }
+        });
+        final File spillDirectory = getSpillDirectory();
+        governor.addReclaimer(new HeapGovernor.Reclaimer() {
+            public String reclaim() {
+                try {
+                    int count = listener.spill(spillDirectory);
+                    return count == 0 ? null : "moved " + count + " differences to " + spillDirectory;
+                } catch (IOException e) {
+                    getLog().warn("Unable to move differences to " + spillDirectory + ": " + e.getMessage());
+                    return null;
                 }
+            }
+        });
+        return governor;
+    }
+
+    /**
+     * @return the strategy named by the <code>strategy</code> parameter, or the one which suits the size of the
+     *         comparison
+     */
+    private ExecutionStrategy getExecutionStrategy(ClassSource origClasses, ClassSource currentClasses)
+            throws MojoExecutionException {
+        if (strategy != null && !ExecutionStrategy.AUTO.equals(strategy)) {
+            ExecutionStrategy configured = ExecutionStrategy.configured(strategy, threads, "configured");
+            if (configured == null) {
+                throw new MojoExecutionException("Unknown strategy '" + strategy + "', use '" + ExecutionStrategy.AUTO
+                        + "', '" + ExecutionStrategy.SERIAL + "', '" + ExecutionStrategy.PARALLEL + "', '"
+                        + ExecutionStrategy.STREAMING + "' or '" + ExecutionStrategy.CACHED + "'");
+            }
+            return configured;
+        }
+        if (incremental) {
+            return ExecutionStrategy.configured(ExecutionStrategy.CACHED, 1, "incremental is set");
+        } else if (streaming) {
+            return ExecutionStrategy.configured(ExecutionStrategy.STREAMING, 1, "streaming is set");
+        }
+
+        ExecutionStrategy.Timing previous;
+        try {
+            previous = timingsFile == null ? null : ExecutionStrategy.readTiming(timingsFile);
+        } catch (IOException e) {
+            getLog().debug("Ignoring unreadable '" + timingsFile + "': " + e.getMessage());
+            previous = null;
+        }
+        return ExecutionStrategy.choose(
+                origClasses.getClassNames().size()
+                        + currentClasses.getClassNames().size(),
+                origClasses.getByteCount() + currentClasses.getByteCount(),
+                project.getArtifacts().size(),
+                threads,
+                governor != null ? governor.getAvailable() : HeapGovernor.getAvailableHeap(),
+                previous);
+    }
+
+    private void executeIncrementally(
+            DiffListener delegatingListener,
+            ClirrDiffListener listener,
+            Severity minSeverity,
+            ClassSource origClasses,
+            ClassSource currentClasses)
+            throws MojoExecutionException {
+        IncrementalState previous;
+        try {
+            previous = IncrementalState.read(incrementalStateFile);
+        } catch (IOException e) {
+            throw new MojoExecutionException(
+                    "Error reading the state of the previous comparison: " + e.getMessage(), e);
+        }
+        IncrementalState state = new IncrementalState();
+        String configuration;
+        try {
+            configuration = getIncrementalConfiguration(minSeverity, origClasses, state, previous);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error reading the files the comparison depends on: " + e.getMessage(), e);
+        }
+        state.setConfiguration(configuration);
+        if (!previous.hasConfiguration(configuration)) {
+            previous = new IncrementalState();
+        }
+        ApiChecker checker = createChecker(state.record(delegatingListener), listener, 1, minSeverity);
+        try {
+            Set<String> recompiled = IncrementalState.readRecompiledClasses(
+                    new File(project.getBuild().getDirectory(), IncrementalState.COMPILER_STATUS_DIRECTORY));
+            Map<String, List<ApiDifference>> reused =
+                    state.update(previous, origClasses, currentClasses, classesDirectory, recompiled);
+            getLog().info("Taking over the results of " + reused.size() + " classes from the previous comparison");
+            checker.setReusedDifferences(reused);
+        } catch (IOException e) {
+            throw new MojoExecutionException(
+                    "Error reading the state of the previous comparison: " + e.getMessage(), e);
+        }
 
-                System.arraycopy(diffs, 0, tmp, ignoredLength, diffs.length);
+        checker.reportDiffs(origClasses, currentClasses);
+        afterCheck(checker, listener);
 
-                ret = tmp;
+        if (!checker.isAborted()) {
+            state.removeAll(checker.getFailures().keySet());
+            try {
+                state.write(incrementalStateFile);
             } catch (IOException e) {
-                getLog().error("Could not read the ignored differences file.", e);
-            } catch (XmlPullParserException e) {
-                getLog().error("Could not read the ignored differences file.", e);
-            } finally {
-                IOUtil.close(rdr);
+                throw new MojoExecutionException("Error writing '" + incrementalStateFile + "': " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Describes everything apart from the current classes which the results of a comparison depend on. Files are
+     * described by their contents, as a rebuilt or downloaded again jar gets a new timestamp without changing, but
+     * only the files whose length or modification time has changed since the previous comparison are read.
+     *
+     * @param state    the state to record the digests of the files in
+     * @param previous the state of the previous comparison, to take the digests of unchanged files from
+     */
+    private String getIncrementalConfiguration(
+            Severity minSeverity, ClassSource origClasses, IncrementalState state, IncrementalState previous)
+            throws IOException {
+        StringBuilder configuration = new StringBuilder();
+        configuration.append("minSeverity=").append(minSeverity);
+        configuration.append(" engine=").append(engine == null ? ClirrDiffEngine.NAME : engine);
+        configuration.append(" includes=").append(includes == null ? null : Arrays.asList(includes));
+        configuration.append(" excludes=").append(excludes == null ? null : Arrays.asList(excludes));
+        configuration.append(" previous=");
+        appendFiles(configuration, Arrays.asList(origClasses.getFiles()), state, previous);
+        List<File> dependencies = new ArrayList<File>();
+        for (Iterator iter = project.getArtifacts().iterator(); iter.hasNext(); ) {
+            Artifact artifact = (Artifact) iter.next();
+            if (artifact.getFile() != null) {
+                dependencies.add(artifact.getFile());
+            }
+        }
+        configuration.append(" dependencies=");
+        appendFiles(configuration, dependencies, state, previous);
+        if (consumerArtifacts != null) {
+            configuration.append(" consumerArtifacts=");
+            for (int i = 0; i < consumerArtifacts.length; i++) {
+                ArtifactSpecification consumer = consumerArtifacts[i];
+                configuration.append(consumer.getGroupId()).append(':').append(consumer.getArtifactId());
+                configuration
+                        .append(':')
+                        .append(consumer.getVersion())
+                        .append(':')
+                        .append(consumer.getType());
+                configuration.append(':').append(consumer.getClassifier()).append(',');
+            }
+        }
+        if (consumerFiles != null) {
+            configuration.append(" consumerFiles=");
+            appendFiles(configuration, Arrays.asList(consumerFiles), state, previous);
+        }
+        return configuration.toString();
+    }
+
+    private static void appendFiles(
+            StringBuilder configuration, List<File> files, IncrementalState state, IncrementalState previous)
+            throws IOException {
+        for (File file : files) {
+            configuration.append(file.getAbsolutePath());
+            if (file.isDirectory()) {
+                List<String> names = FileUtils.getFileNames(file, "**", null, false);
+                Collections.sort(names);
+                configuration.append('[');
+                for (String name : names) {
+                    appendFile(configuration.append(name), new File(file, name), state, previous);
+                    configuration.append(';');
+                }
+                configuration.append(']');
+            } else if (file.isFile()) {
+                appendFile(configuration, file, state, previous);
+            }
+            configuration.append(',');
+        }
+    }
+
+    private static void appendFile(
+            StringBuilder configuration, File file, IncrementalState state, IncrementalState previous)
+            throws IOException {
+        configuration.append(':').append(file.length()).append(':').append(state.digest(file, previous));
+    }
+
+    /**
+     * Tells how many ignored differences did not match anything, if the listener counted them.
+     */
+    protected void logStatistics(DelegatingListener delegatingListener) {
+        IgnoreRuleStatistics statistics = delegatingListener.getStatistics();
+        if (statistics == null) {
+            return;
+        }
+        int unmatched = statistics.getUnmatchedCount();
+        if (unmatched > 0) {
+            getLog().info(unmatched + " of the ignored differences did not match any difference, see "
+                    + ruleStatisticsFile);
+        }
+    }
+
+    protected List<Difference> getAllIgnored() {
+        List<File> files = new ArrayList<File>();
+        if (ignoredDifferencesFile != null && ignoredDifferencesFile.exists()) {
+            files.add(ignoredDifferencesFile);
+        }
+        if (ignoredDifferencesFiles != null) {
+            for (int i = 0; i < ignoredDifferencesFiles.length; i++) {
+                if (ignoredDifferencesFiles[i].exists()) {
+                    files.add(ignoredDifferencesFiles[i]);
+                } else {
+                    getLog().warn("The ignored differences file " + ignoredDifferencesFiles[i] + " does not exist");
+                }
             }
         }
 
-        return ret == null ? Collections.<Difference>emptyList() : Arrays.asList(ret);
+        List<Difference> all = new ArrayList<Difference>();
+        if (ignored != null) {
+            all.addAll(Arrays.asList(ignored));
+        }
+        all.addAll(IgnoreRuleFiles.read(IgnoreRuleFiles.expand(files), threads, getLog()));
+        return all;
     }
 
-    private JavaType[] resolveCurrentClasses(ClassFilter classFilter) throws MojoExecutionException {
+    protected ClassSource resolveCurrentClasses(ClassFilter classFilter) throws MojoExecutionException {
         try {
             ClassLoader currentDepCL = createClassLoader(project.getArtifacts(), null);
-            return createClassSet(classesDirectory, currentDepCL, classFilter);
+            return ClassSource.forDirectory(classesDirectory, currentDepCL, classFilter);
         } catch (MalformedURLException e) {
             throw new MojoExecutionException("Error creating classloader for current classes", e);
         }
     }
 
-    private JavaType[] resolvePreviousReleaseClasses(ClassFilter classFilter)
+    private ClassSource resolvePreviousReleaseClasses(ClassFilter classFilter)
             throws MojoFailureException, MojoExecutionException {
+        if (baselineBundle != null) {
+            return resolveBundledClasses(classFilter);
+        }
+
+        final Set previousArtifacts = getPreviousArtifacts();
+
+        try {
+            resolvePreviousArtifacts(previousArtifacts);
+
+            final List dependencies = getTransitiveDependencies(previousArtifacts);
+
+            ClassLoader origDepCL = createClassLoader(dependencies, previousArtifacts);
+            final Set files = getPreviousArtifactFiles(previousArtifacts);
+            return ClassSource.forJars((File[]) files.toArray(new File[files.size()]), origDepCL, classFilter);
+        } catch (ProjectBuildingException e) {
+            throw new MojoExecutionException("Failed to build project for previous artifact: " + e.getMessage(), e);
+        } catch (InvalidDependencyVersionException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        } catch (ArtifactResolutionException e) {
+            throw new MissingPreviousException("Error resolving previous version: " + e.getMessage(), e);
+        } catch (ArtifactNotFoundException e) {
+            getLog().warn("Impossible to find previous version");
+            try {
+                return ClassSource.forJars(new File[0], null, classFilter);
+            } catch (MalformedURLException e1) {
+                throw new MojoExecutionException("Error creating classloader for previous version's classes", e1);
+            }
+            // throw new MojoExecutionException( "Error finding previous version: " + e.getMessage(), e );
+        } catch (MalformedURLException e) {
+            throw new MojoExecutionException("Error creating classloader for previous version's classes", e);
+        }
+    }
+
+    /**
+     * Determines the artifacts of the previous release, either from <code>comparisonArtifacts</code> or by
+     * looking for the latest version matching <code>comparisonVersion</code>. The returned artifacts are not
+     * resolved yet.
+     */
+    protected Set getPreviousArtifacts() throws MojoFailureException, MojoExecutionException {
         final Set previousArtifacts;
-        final Artifact firstPreviousArtifact;
         if (comparisonArtifacts == null) {
-            firstPreviousArtifact = getComparisonArtifact();
+            Artifact firstPreviousArtifact = getComparisonArtifact();
             comparisonVersion = firstPreviousArtifact.getVersion();
             getLog().info("Comparing to version: " + comparisonVersion);
             previousArtifacts = Collections.singleton(firstPreviousArtifact);
         } else {
             previousArtifacts = resolveArtifacts(comparisonArtifacts);
-            Artifact a = null;
             for (Iterator iter = previousArtifacts.iterator(); iter.hasNext(); ) {
                 Artifact artifact = (Artifact) iter.next();
-                if (a == null) {
-                    a = artifact;
-                }
                 getLog().debug("Comparing to " + artifact.getGroupId() + ":" + artifact.getArtifactId() + ":"
                         + artifact.getVersion() + ":" + artifact.getClassifier() + ":"
                         + artifact.getType());
             }
-            firstPreviousArtifact = a;
         }
+        return previousArtifacts;
+    }
 
+    /**
+     * Lists the released versions of the project in a version range, oldest first, apart from the version being
+     * built. The returned artifacts are not resolved yet.
+     *
+     * @param versionRange a version range, such as <code>[2.0,3.0)</code>
+     */
+    protected List<Artifact> getReleasedVersions(String versionRange)
+            throws MojoFailureException, MojoExecutionException {
+        VersionRange range;
         try {
-            for (Iterator iter = previousArtifacts.iterator(); iter.hasNext(); ) {
-                Artifact artifact = (Artifact) iter.next();
-                resolver.resolve(artifact, project.getRemoteArtifactRepositories(), localRepository);
-            }
-
-            final List dependencies = getTransitiveDependencies(previousArtifacts);
+            range = VersionRange.createFromVersionSpec(versionRange);
+        } catch (InvalidVersionSpecificationException e) {
+            throw new MojoFailureException("Invalid comparison versions: " + e.getMessage());
+        }
 
-            ClassLoader origDepCL = createClassLoader(dependencies, previousArtifacts);
-            final Set files = new HashSet();
-            for (Iterator iter = previousArtifacts.iterator(); iter.hasNext(); ) {
-                Artifact artifact = (Artifact) iter.next();
-                // Clirr expects JAR files, so let's not pass other artifact files.
-                // MCLIRR-39 Support for Maven Plugins, which are also JARs
-                // MCLIRR-61: jenkins plugin so test if isAddedToClasspath
-                if ("jar".equals(artifact.getType())
-                        || "maven-plugin".equals(artifact.getType())
-                        || "bundle".equals(artifact.getType())
-                        || artifact.getArtifactHandler().isAddedToClasspath()
-                        || skipArtifactTypeTest) {
-                    files.add(new File(localRepository.getBasedir(), localRepository.pathOf(artifact)));
+        List versions;
+        try {
+            Artifact artifact = factory.createDependencyArtifact(
+                    project.getGroupId(),
+                    project.getArtifactId(),
+                    range,
+                    project.getPackaging(),
+                    null,
+                    Artifact.SCOPE_COMPILE);
+            versions = getAvailableVersions(artifact);
+        } catch (ArtifactMetadataRetrievalException e) {
+            throw new MojoExecutionException("Error determining previous versions: " + e.getMessage(), e);
+        }
+        Collections.sort(versions);
+
+        List<Artifact> released = new ArrayList<Artifact>();
+        for (Iterator iter = versions.iterator(); iter.hasNext(); ) {
+            ArtifactVersion version = (ArtifactVersion) iter.next();
+            // the version being built resolves to the classes of the project, if Maven resolves it at all
+            if (range.containsVersion(version) && !version.toString().equals(project.getVersion())) {
+                Artifact artifact = factory.createDependencyArtifact(
+                        project.getGroupId(),
+                        project.getArtifactId(),
+                        VersionRange.createFromVersion(version.toString()),
+                        project.getPackaging(),
+                        null,
+                        Artifact.SCOPE_COMPILE);
+                if (isInspectable(artifact)) {
+                    released.add(artifact);
                 }
             }
-            return BcelTypeArrayBuilder.createClassSet(
-                    (File[]) files.toArray(new File[files.size()]), origDepCL, classFilter);
+        }
+        return released;
+    }
+
+    /**
+     * Resolves a single previous version of the project and its dependencies.
+     *
+     * @return the class loader for the dependencies of the previous version, to read its classes with
+     */
+    protected ClassLoader resolveBaseline(Artifact baseline) throws MojoExecutionException {
+        Set previousArtifacts = Collections.singleton(baseline);
+        try {
+            resolvePreviousArtifacts(previousArtifacts);
+            return createClassLoader(getTransitiveDependencies(previousArtifacts), previousArtifacts);
         } catch (ProjectBuildingException e) {
-            throw new MojoExecutionException("Failed to build project for previous artifact: " + e.getMessage(), e);
+            throw new MojoExecutionException("Failed to build project for " + baseline + ": " + e.getMessage(), e);
         } catch (InvalidDependencyVersionException e) {
             throw new MojoExecutionException(e.getMessage(), e);
         } catch (ArtifactResolutionException e) {
-            throw new MissingPreviousException("Error resolving previous version: " + e.getMessage(), e);
+            throw new MojoExecutionException("Error resolving " + baseline + ": " + e.getMessage(), e);
         } catch (ArtifactNotFoundException e) {
-            getLog().warn("Impossible to find previous version");
-            return new JavaType[0];
-            // throw new MojoExecutionException( "Error finding previous version: " + e.getMessage(), e );
+            throw new MojoExecutionException("Error finding " + baseline + ": " + e.getMessage(), e);
         } catch (MalformedURLException e) {
-            throw new MojoExecutionException("Error creating classloader for previous version's classes", e);
+            throw new MojoExecutionException("Error creating classloader for " + baseline, e);
+        }
+    }
+
+    protected void resolvePreviousArtifacts(Set previousArtifacts)
+            throws ArtifactResolutionException, ArtifactNotFoundException {
+        if (getRepositorySystemResolver() != null) {
+            getRepositorySystemResolver().resolve(previousArtifacts);
+            return;
+        }
+        for (Iterator iter = previousArtifacts.iterator(); iter.hasNext(); ) {
+            Artifact artifact = (Artifact) iter.next();
+            resolver.resolve(artifact, project.getRemoteArtifactRepositories(), localRepository);
+        }
+    }
+
+    /**
+     * Returns the files of those previous artifacts which Clirr is able to inspect.
+     */
+    protected Set getPreviousArtifactFiles(Set previousArtifacts) {
+        final Set files = new HashSet();
+        for (Iterator iter = previousArtifacts.iterator(); iter.hasNext(); ) {
+            Artifact artifact = (Artifact) iter.next();
+            if (isInspectable(artifact)) {
+                files.add(getFile(artifact));
+            }
+        }
+        return files;
+    }
+
+    protected File getFile(Artifact artifact) {
+        if (artifact.getFile() != null) {
+            return artifact.getFile();
+        }
+        return new File(localRepository.getBasedir(), localRepository.pathOf(artifact));
+    }
+
+    protected boolean isInspectable(Artifact artifact) {
+        // Clirr expects JAR files, so let's not pass other artifact files.
+        // MCLIRR-39 Support for Maven Plugins, which are also JARs
+        // MCLIRR-61: jenkins plugin so test if isAddedToClasspath
+        return "jar".equals(artifact.getType())
+                || "maven-plugin".equals(artifact.getType())
+                || "bundle".equals(artifact.getType())
+                || artifact.getArtifactHandler().isAddedToClasspath()
+                || skipArtifactTypeTest;
+    }
+
+    private ClassSource resolveBundledClasses(ClassFilter classFilter) throws MojoExecutionException {
+        if (!baselineBundle.isFile()) {
+            throw new MojoExecutionException("The baseline bundle " + baselineBundle + " does not exist");
+        }
+
+        final BaselineBundle bundle;
+        try {
+            bundle = BaselineBundle.extract(baselineBundle, baselineBundleDirectory);
+        } catch (IOException e) {
+            throw new MojoExecutionException(
+                    "Error reading baseline bundle " + baselineBundle + ": " + e.getMessage(), e);
+        }
+
+        comparisonVersion = bundle.getVersion();
+        getLog().info("Comparing to version: " + comparisonVersion + " (from " + baselineBundle.getName() + ")");
+
+        try {
+            ClassLoader origDepCL = createClassLoader(bundle.getDependencyFiles());
+            return ClassSource.forJars(bundle.getBaselineFiles(), origDepCL, classFilter);
+        } catch (MalformedURLException e) {
+            throw new MojoExecutionException("Error creating classloader for the baseline bundle's classes", e);
         }
     }
 
     protected List getTransitiveDependencies(final Set previousArtifacts)
             throws ProjectBuildingException, InvalidDependencyVersionException, ArtifactResolutionException,
                     ArtifactNotFoundException {
+        if (getRepositorySystemResolver() != null) {
+            return getRepositorySystemResolver().resolveDependencies(previousArtifacts);
+        }
         final List dependencies = new ArrayList();
         for (Iterator iter = previousArtifacts.iterator(); iter.hasNext(); ) {
             final Artifact a = (Artifact) iter.next();
@@ -474,9 +1180,7 @@ public abstract class AbstractClirrMojo extends AbstractMojo {
 
             if (!previousArtifact.getVersionRange().isSelectedVersionKnown(previousArtifact)) {
                 getLog().debug("Searching for versions in range: " + previousArtifact.getVersionRange());
-                List availableVersions = metadataSource.retrieveAvailableVersions(
-                        previousArtifact, localRepository, project.getRemoteArtifactRepositories());
-                filterSnapshots(availableVersions);
+                List availableVersions = getAvailableVersions(previousArtifact);
                 ArtifactVersion version = range.matchVersion(availableVersions);
                 if (version != null) {
                     previousArtifact.selectVersion(version.toString());
@@ -495,6 +1199,36 @@ public abstract class AbstractClirrMojo extends AbstractMojo {
         return previousArtifact;
     }
 
+    /**
+     * Retrieves the released versions of an artifact which are available in the repositories.
+     *
+     * @return the versions, as a list of {@link ArtifactVersion}, without snapshots
+     */
+    protected List getAvailableVersions(Artifact artifact) throws ArtifactMetadataRetrievalException {
+        List availableVersions = getRepositorySystemResolver() != null
+                ? getRepositorySystemResolver().retrieveAvailableVersions(artifact)
+                : metadataSource.retrieveAvailableVersions(
+                        artifact, localRepository, project.getRemoteArtifactRepositories());
+        filterSnapshots(availableVersions);
+        return availableVersions;
+    }
+
+    /**
+     * @return the resolver working on the repository system of the running build, or null, if the Maven 2
+     *         artifact resolver has to be used
+     */
+    private RepositorySystemResolver getRepositorySystemResolver() {
+        if (repositorySystemResolver == null
+                && !legacyResolution
+                && repositorySystem != null
+                && repositorySession != null
+                && remoteProjectRepositories != null) {
+            repositorySystemResolver = new RepositorySystemResolver(
+                    repositorySystem, repositorySession, remoteProjectRepositories, factory);
+        }
+        return repositorySystemResolver;
+    }
+
     private void filterSnapshots(List versions) {
         for (Iterator versionIterator = versions.iterator(); versionIterator.hasNext(); ) {
             ArtifactVersion version = (ArtifactVersion) versionIterator.next();
@@ -506,46 +1240,25 @@ public abstract class AbstractClirrMojo extends AbstractMojo {
 
     public static JavaType[] createClassSet(File classes, ClassLoader thirdPartyClasses, ClassFilter classFilter)
             throws MalformedURLException {
-        ClassLoader classLoader = new URLClassLoader(new URL[] {classes.toURI().toURL()}, thirdPartyClasses);
-
-        Repository repository = new ClassLoaderRepository(classLoader);
-
-        List selected = new ArrayList();
-
-        DirectoryScanner scanner = new DirectoryScanner();
-        scanner.setBasedir(classes);
-        scanner.setIncludes(new String[] {"**/*.class"});
-        scanner.scan();
-
-        String[] files = scanner.getIncludedFiles();
-
-        for (int i = 0; i < files.length; i++) {
-            File f = new File(classes, files[i]);
-            JavaClass clazz = extractClass(f, repository);
-            if (classFilter.isSelected(clazz)) {
-                selected.add(new BcelJavaType(clazz));
-                repository.storeClass(clazz);
-            }
-        }
-
-        JavaType[] ret = new JavaType[selected.size()];
-        selected.toArray(ret);
-        return ret;
+        return ClassSource.forDirectory(classes, thirdPartyClasses, classFilter).toArray();
     }
 
-    private static JavaClass extractClass(File f, Repository repository) throws CheckerException {
-        InputStream is = null;
+    /**
+     * Reads the classes of the given jar files.
+     *
+     * @param jars              the jar files to read the classes from
+     * @param thirdPartyClasses the dependencies of the classes in the jar files, may be null
+     * @param classFilter       selects the classes to return
+     * @return the selected classes, backed by a {@link ConcurrentClassRepository}
+     * @throws MalformedURLException Failed to convert a file to an URL.
+     */
+    public static JavaType[] createClassSet(File[] jars, ClassLoader thirdPartyClasses, ClassFilter classFilter)
+            throws MalformedURLException {
+        ClassSource source = ClassSource.forJars(jars, thirdPartyClasses, classFilter);
         try {
-            is = new FileInputStream(f);
-
-            ClassParser parser = new ClassParser(is, f.getName());
-            JavaClass clazz = parser.parse();
-            clazz.setRepository(repository);
-            return clazz;
-        } catch (IOException ex) {
-            throw new CheckerException("Cannot read " + f, ex);
+            return source.toArray();
         } finally {
-            IOUtil.close(is);
+            source.close();
         }
     }
 
@@ -582,6 +1295,24 @@ public abstract class AbstractClirrMojo extends AbstractMojo {
         return cl;
     }
 
+    /**
+     * Create a ClassLoader, which includes the given files.
+     *
+     * @param files The files, from which to build a {@link ClassLoader}.
+     * @return A {@link ClassLoader}, or null, if there are no files.
+     * @throws MalformedURLException Failed to convert a file to an URL.
+     */
+    protected static ClassLoader createClassLoader(List<File> files) throws MalformedURLException {
+        if (files.isEmpty()) {
+            return null;
+        }
+        URL[] urls = new URL[files.size()];
+        for (int i = 0; i < urls.length; i++) {
+            urls[i] = files.get(i).toURI().toURL();
+        }
+        return new URLClassLoader(urls);
+    }
+
     protected static Severity convertSeverity(String minSeverity) {
         Severity s;
         if ("info".equals(minSeverity)) {
@@ -610,7 +1341,7 @@ public abstract class AbstractClirrMojo extends AbstractMojo {
             return false;
         }
 
-        if (comparisonArtifacts == null || comparisonArtifacts.length == 0) {
+        if (baselineBundle == null && (comparisonArtifacts == null || comparisonArtifacts.length == 0)) {
             Artifact previousArtifact = getComparisonArtifact();
             if (previousArtifact.getVersion() == null) {
                 getLog().info(
@@ -623,49 +1354,204 @@ public abstract class AbstractClirrMojo extends AbstractMojo {
     }
 
     /**
-     * Calls {@link Checker#reportDiffs(JavaType[], JavaType[])} and take care of BCEL errors.
+     * Compares the classes and reports the differences to the listener. Classes which cannot be checked,
+     * usually because BCEL fails to load a class of their hierarchy, are logged and left out of the
+     * comparison, while all other classes are still compared.
+     *
+     * <p>
+     * When {@link #getMaxErrors()} is positive, the comparison stops once that many errors have been counted by
+     * <code>results</code>, and the classes of the {@link #getErrorHintFile() hint file} are compared first.
      *
-     * @param checker        not null
+     * @param listener       not null
+     * @param results        the listener of <code>listener</code> which collects the reported differences
+     * @param minSeverity    the minimal severity of the reported differences, or null, to report all differences
      * @param origClasses    not null
      * @param currentClasses not null
-     * @see Checker#reportDiffs(JavaType[], JavaType[])
      */
-    private void reportDiffs(Checker checker, JavaType[] origClasses, JavaType[] currentClasses) {
-        try {
-            checker.reportDiffs(origClasses, currentClasses);
-        } catch (CheckerException e) {
-            getLog().error(e.getMessage());
-
-            // remove class with errors
-            int matchingClasses = 0;
-            int j = 0;
-            for (int i = 0; i < origClasses.length; i++) {
-                if (!e.getMessage().endsWith(origClasses[i].getName())) {
-                    matchingClasses++;
-                }
-            }
-            JavaType[] origClasses2 = new JavaType[matchingClasses];
-            for (int i = 0; i < origClasses.length; i++) {
-                if (!e.getMessage().endsWith(origClasses[i].getName())) {
-                    origClasses2[j++] = origClasses[i];
+    protected void reportDiffs(
+            DiffListener listener,
+            ClirrDiffListener results,
+            Severity minSeverity,
+            JavaType[] origClasses,
+            JavaType[] currentClasses)
+            throws MojoExecutionException {
+        reportDiffs(listener, results, minSeverity, origClasses, currentClasses, threads);
+    }
+
+    private void reportDiffs(
+            DiffListener listener,
+            ClirrDiffListener results,
+            Severity minSeverity,
+            JavaType[] origClasses,
+            JavaType[] currentClasses,
+            int threads)
+            throws MojoExecutionException {
+        ApiChecker checker = createChecker(listener, results, threads, minSeverity);
+        long start = System.currentTimeMillis();
+        checker.reportDiffs(origClasses, currentClasses);
+        getLog().debug("Compared " + origClasses.length + " previous and " + currentClasses.length
+                + " current classes with the " + engine + " engine in " + (System.currentTimeMillis() - start)
+                + " ms");
+        afterCheck(checker, results);
+    }
+
+    /**
+     * Reads the classes of the consumers, once per execution, also when several comparisons ask for them at once.
+     *
+     * @return the usage index of the consumers, or null, if there are none
+     */
+    protected synchronized UsageIndex getUsageIndex() throws MojoExecutionException {
+        if (!usageIndexRead) {
+            usageIndex = readUsageIndex();
+            usageIndexRead = true;
+        }
+        return usageIndex;
+    }
+
+    private UsageIndex readUsageIndex() throws MojoExecutionException {
+        List<File> files = new ArrayList<File>();
+        if (consumerFiles != null) {
+            files.addAll(Arrays.asList(consumerFiles));
+        }
+        if (consumerArtifacts != null && consumerArtifacts.length > 0) {
+            try {
+                Set artifacts = resolveArtifacts(consumerArtifacts);
+                resolvePreviousArtifacts(artifacts);
+                for (Iterator iter = artifacts.iterator(); iter.hasNext(); ) {
+                    files.add(getFile((Artifact) iter.next()));
                 }
+            } catch (MojoFailureException e) {
+                throw new MojoExecutionException(e.getMessage(), e);
+            } catch (ArtifactResolutionException e) {
+                throw new MojoExecutionException("Error resolving consumer artifacts: " + e.getMessage(), e);
+            } catch (ArtifactNotFoundException e) {
+                throw new MojoExecutionException("Error finding consumer artifacts: " + e.getMessage(), e);
             }
+        }
+        if (files.isEmpty()) {
+            return null;
+        }
 
-            matchingClasses = 0;
-            j = 0;
-            for (int i = 0; i < currentClasses.length; i++) {
-                if (!e.getMessage().endsWith(currentClasses[i].getName())) {
-                    matchingClasses++;
-                }
+        UsageIndex usage;
+        try {
+            usage = UsageIndex.scan(files);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error reading consumer classes: " + e.getMessage(), e);
+        }
+        getLog().info("Comparing only what " + usage.getClassCount() + " consumer classes use, "
+                + usage.getMemberNameCount() + " distinct member names");
+        return usage;
+    }
+
+    /**
+     * @return the engine named by the <code>engine</code> parameter
+     */
+    protected DiffEngine getDiffEngine() throws MojoExecutionException {
+        if (engine == null || ClirrDiffEngine.NAME.equals(engine)) {
+            return new ClirrDiffEngine();
+        } else if (IndexedDiffEngine.NAME.equals(engine)) {
+            return new IndexedDiffEngine();
+        }
+        throw new MojoExecutionException("Unknown engine '" + engine + "', use '" + ClirrDiffEngine.NAME + "' or '"
+                + IndexedDiffEngine.NAME + "'");
+    }
+
+    /**
+     * @return the number of errors to stop the comparison at, or 0, to compare all classes
+     */
+    protected int getMaxErrors() {
+        return 0;
+    }
+
+    /**
+     * @return the file which keeps the names of the classes which had errors, or null, to not keep them
+     */
+    protected File getErrorHintFile() {
+        return null;
+    }
+
+    /**
+     * @return whether the listener of {@link #executeClirr(Severity)} only counts the differences, for goals which
+     *         render no report from them
+     */
+    protected boolean isCountsOnly() {
+        return false;
+    }
+
+    /**
+     * Creates a checker with the engine, the heap governor, the consumers and the error limit of the execution.
+     *
+     * @param listener the listener to report the differences to
+     * @param results  the listener of <code>listener</code> which counts the errors, or null, if the execution
+     *                 has no error limit
+     */
+    protected ApiChecker createChecker(
+            DiffListener listener, ClirrDiffListener results, int threads, Severity minSeverity)
+            throws MojoExecutionException {
+        ApiChecker checker = new ApiChecker(listener, threads, minSeverity);
+        checker.setEngine(getDiffEngine());
+        checker.setHeapGovernor(governor);
+        checker.setUsageIndex(getUsageIndex());
+        if (getMaxErrors() > 0) {
+            checker.setErrorLimit(results, getMaxErrors());
+            checker.setPriorityClasses(readErrorHints());
+        }
+        return checker;
+    }
+
+    private void afterCheck(ApiChecker checker, ClirrDiffListener results) throws MojoExecutionException {
+        for (Iterator iter = checker.getFailures().entrySet().iterator(); iter.hasNext(); ) {
+            Map.Entry entry = (Map.Entry) iter.next();
+            getLog().error("Unable to check " + entry.getKey() + ": " + ((Exception) entry.getValue()).getMessage());
+        }
+        if (checker.isAborted()) {
+            getLog().info("Stopped comparing classes after " + results.getSeverityCount(Severity.ERROR)
+                    + " error(s), the remaining classes have not been checked");
+        }
+
+        // the hints only serve to find errors early, so they are left alone when the comparison never stops early
+        File hintFile = getMaxErrors() > 0 ? getErrorHintFile() : null;
+        if (hintFile != null) {
+            Set<String> classNames = new TreeSet<String>();
+            if (checker.isAborted()) {
+                // classes which had errors before, but have not been checked this time, are still suspects
+                classNames.addAll(readErrorHints());
             }
-            JavaType[] currentClasses2 = new JavaType[matchingClasses];
-            for (int i = 0; i < currentClasses.length; i++) {
-                if (!e.getMessage().endsWith(currentClasses[i].getName())) {
-                    currentClasses2[j++] = currentClasses[i];
-                }
+            classNames.addAll(results.getErrorClassNames());
+            writeErrorHints(hintFile, classNames);
+        }
+    }
+
+    private Set<String> readErrorHints() throws MojoExecutionException {
+        File hintFile = getErrorHintFile();
+        if (hintFile == null || !hintFile.isFile()) {
+            return Collections.emptySet();
+        }
+        try {
+            Set<String> classNames = new TreeSet<String>();
+            for (String line : FileUtils.loadFile(hintFile)) {
+                classNames.add(line.trim());
             }
+            return classNames;
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error reading '" + hintFile + "': " + e.getMessage(), e);
+        }
+    }
 
-            reportDiffs(checker, origClasses2, currentClasses2);
+    private void writeErrorHints(File hintFile, Set<String> classNames) throws MojoExecutionException {
+        if (classNames.isEmpty()) {
+            hintFile.delete();
+            return;
+        }
+        StringBuilder content = new StringBuilder();
+        for (String className : classNames) {
+            content.append(className).append('\n');
+        }
+        try {
+            hintFile.getParentFile().mkdirs();
+            FileUtils.fileWrite(hintFile, "UTF-8", content.toString());
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error writing '" + hintFile + "': " + e.getMessage(), e);
         }
     }
 }
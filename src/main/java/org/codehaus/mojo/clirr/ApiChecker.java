@@ -0,0 +1,624 @@
+package org.codehaus.mojo.clirr;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import net.sf.clirr.core.ApiDifference;
+import net.sf.clirr.core.CheckerException;
+import net.sf.clirr.core.DiffListener;
+import net.sf.clirr.core.Message;
+import net.sf.clirr.core.ScopeSelector;
+import net.sf.clirr.core.Severity;
+import net.sf.clirr.core.internal.ApiDiffDispatcher;
+import net.sf.clirr.core.internal.ClassChangeCheck;
+import net.sf.clirr.core.internal.CoIterator;
+import net.sf.clirr.core.internal.NameComparator;
+import net.sf.clirr.core.spi.Field;
+import net.sf.clirr.core.spi.JavaType;
+import net.sf.clirr.core.spi.Method;
+import net.sf.clirr.core.spi.Scope;
+
+/**
+ * Runs the class checks of a {@link DiffEngine} the same way {@link net.sf.clirr.core.Checker} does, but
+ * isolates the classes that cannot be checked: if checking a class pair throws a {@link CheckerException} or,
+ * as BCEL does when a class of its hierarchy is missing, a {@link ClassNotFoundException}, the differences of
+ * that pair are discarded, the failure is recorded and the comparison continues with the next pair.
+ * <p>
+ * With more than one thread, the class pairs are split into partitions of whole packages, which are checked
+ * concurrently, each with its own set of checks. The differences of each partition are reported in the order
+ * of the partitions, so the listener sees exactly the same differences in the same order as in a serial run.
+ * The classes must then be backed by a repository that can be used concurrently, such as
+ * {@link ConcurrentClassRepository}.
+ * <p>
+ * Alternatively, the classes can be streamed from two {@link ClassSource}s: both are merge-joined by name and
+ * each class pair is read, checked and released before the next one is read.
+ * <p>
+ * With a {@link UsageIndex}, only the classes and members which the consumers use are compared.
+ * <p>
+ * With an error limit, the comparison stops as soon as the given number of errors has been reported, and the
+ * priority classes, usually those which had errors before, are compared before all others.
+ * <p>
+ * With a {@link HeapGovernor}, the governor is called between classes, from the thread which reports the
+ * differences, so that it can free memory before the heap runs out.
+ *
+ * @since 2.9
+ */
+class ApiChecker {
+    private static final Message MSG_CLASS_ADDED = new Message(8000);
+
+    private static final Message MSG_CLASS_REMOVED = new Message(8001);
+
+    /**
+     * The number of partitions per thread, so that threads which are done early can take over some of the
+     * work of the others.
+     */
+    private static final int PARTITIONS_PER_THREAD = 4;
+
+    private final DiffListener listener;
+
+    private final int threads;
+
+    private final Severity minSeverity;
+
+    private final Map<String, Exception> failures = new LinkedHashMap<String, Exception>();
+
+    private ClirrDiffListener errorCounter;
+
+    private int maxErrors;
+
+    private Set<String> priorityClasses = Collections.emptySet();
+
+    private volatile boolean aborted;
+
+    private DiffEngine engine = new ClirrDiffEngine();
+
+    private UsageIndex usage;
+
+    private Map<String, List<ApiDifference>> reusedDifferences = Collections.emptyMap();
+
+    private HeapGovernor governor;
+
+    /**
+     * Whether each class which the consumers use is used as a whole, by class name, or null, to compare all
+     * classes.
+     */
+    private Map<String, Boolean> usedClasses;
+
+    ApiChecker(DiffListener listener, int threads) {
+        this(listener, threads, null);
+    }
+
+    /**
+     * @param listener    the listener to report the differences to
+     * @param threads     the number of threads to compare the classes with
+     * @param minSeverity the severity below which differences are of no interest, or null, to report all
+     *                    differences. When infos are not reported, added classes are not looked at, and added
+     *                    fields and added concrete methods of classes are left out before the checks run; the
+     *                    differences of the other checks are filtered once they are found
+     */
+    ApiChecker(DiffListener listener, int threads, Severity minSeverity) {
+        this.listener = listener;
+        this.threads = Math.max(1, threads);
+        this.minSeverity = minSeverity;
+    }
+
+    /**
+     * Compares two sets of classes and reports the differences to the listener.
+     *
+     * @param origClasses    the classes of the previous version, not null
+     * @param currentClasses the classes of the current version, not null
+     */
+    public void reportDiffs(JavaType[] origClasses, JavaType[] currentClasses) {
+        listener.start();
+        try {
+            List<JavaType[]> pairs = pair(origClasses, currentClasses);
+            if (usage != null) {
+                pairs = selectUsed(pairs);
+            }
+            pairs = prioritize(pairs);
+            if (threads == 1 || pairs.size() < 2) {
+                Partition partition = new Partition(pairs);
+                partition.run(listener);
+                failures.putAll(partition.failures);
+            } else {
+                reportDiffsConcurrently(pairs);
+            }
+        } finally {
+            listener.stop();
+        }
+    }
+
+    /**
+     * Compares two sets of classes one class pair at a time, in a single thread, and reports the differences
+     * to the listener. Only the pair being checked and the classes of its hierarchy are held in memory.
+     *
+     * @param origClasses    the classes of the previous version, not null
+     * @param currentClasses the classes of the current version, not null
+     */
+    public void reportDiffs(final ClassSource origClasses, final ClassSource currentClasses) {
+        listener.start();
+        try {
+            if (usage != null) {
+                usedClasses = usage.findUsedClasses(new UsageIndex.ClassLookup() {
+                    public JavaType[] find(String className) {
+                        return new JavaType[] {
+                            origClasses.contains(className) ? origClasses.load(className) : null,
+                            currentClasses.contains(className) ? currentClasses.load(className) : null
+                        };
+                    }
+                });
+            }
+
+            Partition partition = new Partition(null);
+            for (String className : new TreeSet<String>(priorityClasses)) {
+                if (isLimitReached()) {
+                    break;
+                }
+                boolean inOrig = origClasses.contains(className);
+                boolean inCurrent = currentClasses.contains(className);
+                if (inOrig || inCurrent) {
+                    check(partition, className, inOrig ? origClasses : null, inCurrent ? currentClasses : null);
+                }
+            }
+
+            Iterator<String> origNames = origClasses.getClassNames().iterator();
+            Iterator<String> currentNames = currentClasses.getClassNames().iterator();
+            String origName = next(origNames);
+            String currentName = next(currentNames);
+            while ((origName != null || currentName != null) && !isLimitReached()) {
+                int order = origName == null ? 1 : currentName == null ? -1 : origName.compareTo(currentName);
+                String className = order <= 0 ? origName : currentName;
+                if (!priorityClasses.contains(className)) {
+                    check(partition, className, order <= 0 ? origClasses : null, order >= 0 ? currentClasses : null);
+                    checkHeap();
+                }
+                if (order <= 0) {
+                    origName = next(origNames);
+                }
+                if (order >= 0) {
+                    currentName = next(currentNames);
+                }
+            }
+            failures.putAll(partition.failures);
+        } finally {
+            listener.stop();
+        }
+    }
+
+    /**
+     * @param engine the engine to compare the classes which exist in both versions with
+     */
+    public void setEngine(DiffEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Takes over the differences of some classes from a previous comparison instead of checking them again.
+     *
+     * @param reusedDifferences the differences of the classes, by class name
+     */
+    public void setReusedDifferences(Map<String, List<ApiDifference>> reusedDifferences) {
+        this.reusedDifferences = reusedDifferences;
+    }
+
+    /**
+     * Only compares the classes and members which the consumers in the given index use.
+     */
+    public void setUsageIndex(UsageIndex usage) {
+        this.usage = usage;
+    }
+
+    /**
+     * @param governor the governor to let free memory while comparing, or null
+     */
+    public void setHeapGovernor(HeapGovernor governor) {
+        this.governor = governor;
+    }
+
+    /**
+     * Stops the comparison as soon as the given number of errors has been reported.
+     *
+     * @param errorCounter the listener which counts the reported differences, after ignored differences have
+     *                     been left out
+     * @param maxErrors    the number of errors to stop at
+     */
+    public void setErrorLimit(ClirrDiffListener errorCounter, int maxErrors) {
+        this.errorCounter = errorCounter;
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * @param priorityClasses the names of the classes to compare before all others
+     */
+    public void setPriorityClasses(Set<String> priorityClasses) {
+        this.priorityClasses = priorityClasses;
+    }
+
+    /**
+     * @return whether the comparison was stopped because the error limit was reached
+     */
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    private boolean isLimitReached() {
+        if (!aborted && maxErrors > 0 && errorCounter.getSeverityCount(Severity.ERROR) >= maxErrors) {
+            aborted = true;
+        }
+        return aborted;
+    }
+
+    private void checkHeap() {
+        if (governor != null) {
+            governor.check();
+        }
+    }
+
+    private void check(Partition partition, String className, ClassSource origClasses, ClassSource currentClasses) {
+        if (usedClasses != null && !usedClasses.containsKey(className)) {
+            return;
+        }
+        if (reusedDifferences.containsKey(className)) {
+            // no need to read the classes at all
+            partition.check(className, null, listener);
+            return;
+        }
+        JavaType[] pair = new JavaType[2];
+        try {
+            pair[0] = origClasses != null ? origClasses.load(className) : null;
+            pair[1] = currentClasses != null ? currentClasses.load(className) : null;
+        } catch (CheckerException e) {
+            partition.failures.put(className, e);
+            return;
+        }
+        if (usedClasses != null && !usedClasses.get(className).booleanValue()) {
+            pair = usage.restrict(pair);
+        }
+        if (pair[0] != null || pair[1] != null) {
+            partition.check(className, pair, listener);
+        }
+    }
+
+    /**
+     * Leaves out the pairs of classes which the consumers do not use, and the members which they do not use of
+     * the classes which they do not use as a whole.
+     */
+    private List<JavaType[]> selectUsed(List<JavaType[]> pairs) {
+        final Map<String, JavaType[]> pairsByName = new HashMap<String, JavaType[]>(pairs.size() * 2);
+        for (JavaType[] pair : pairs) {
+            pairsByName.put(getName(pair), pair);
+        }
+        usedClasses = usage.findUsedClasses(new UsageIndex.ClassLookup() {
+            public JavaType[] find(String className) {
+                JavaType[] pair = pairsByName.get(className);
+                return pair != null ? pair : new JavaType[0];
+            }
+        });
+
+        List<JavaType[]> used = new ArrayList<JavaType[]>();
+        for (JavaType[] pair : pairs) {
+            Boolean whole = usedClasses.get(getName(pair));
+            if (whole != null) {
+                used.add(whole.booleanValue() ? pair : usage.restrict(pair));
+            }
+        }
+        return used;
+    }
+
+    private List<JavaType[]> prioritize(List<JavaType[]> pairs) {
+        if (priorityClasses.isEmpty()) {
+            return pairs;
+        }
+        List<JavaType[]> prioritized = new ArrayList<JavaType[]>(pairs.size());
+        List<JavaType[]> others = new ArrayList<JavaType[]>(pairs.size());
+        for (JavaType[] pair : pairs) {
+            if (priorityClasses.contains(getName(pair))) {
+                prioritized.add(pair);
+            } else {
+                others.add(pair);
+            }
+        }
+        prioritized.addAll(others);
+        return prioritized;
+    }
+
+    private boolean isReported(Severity severity) {
+        return minSeverity == null || minSeverity.compareTo(severity) <= 0;
+    }
+
+    /**
+     * Leaves out the fields whose names the previous version does not have, which Clirr reports as added, and
+     * the methods of such names, which Clirr reports as added unless they are abstract or in an interface. Both
+     * differences are only informational. Clirr pairs members by name, so the other members are compared as
+     * before; constructors are kept, as the modifier checks look at them.
+     *
+     * @return the current class, or a view of it without those members
+     */
+    private static JavaType withoutInformationalMembers(JavaType orig, JavaType current) {
+        Field[] currentFields = current.getFields();
+        Set<String> origFieldNames = new HashSet<String>();
+        for (Field field : orig.getFields()) {
+            origFieldNames.add(field.getName());
+        }
+        List<Field> fields = new ArrayList<Field>(currentFields.length);
+        for (Field field : currentFields) {
+            if (origFieldNames.contains(field.getName())) {
+                fields.add(field);
+            }
+        }
+
+        Method[] currentMethods = current.getMethods();
+        Set<String> origMethodNames = new HashSet<String>();
+        for (Method method : orig.getMethods()) {
+            origMethodNames.add(method.getName());
+        }
+        List<Method> methods = new ArrayList<Method>(currentMethods.length);
+        for (Method method : currentMethods) {
+            if (origMethodNames.contains(method.getName())
+                    || "<init>".equals(method.getName())
+                    || current.isInterface()
+                    || method.isAbstract()) {
+                methods.add(method);
+            }
+        }
+
+        if (fields.size() == currentFields.length && methods.size() == currentMethods.length) {
+            return current;
+        }
+        return new MemberView(
+                current, fields.toArray(new Field[fields.size()]), methods.toArray(new Method[methods.size()]));
+    }
+
+    private static String next(Iterator<String> names) {
+        return names.hasNext() ? names.next() : null;
+    }
+
+    /**
+     * @return the classes which could not be checked, mapped to the reason, in the order of the comparison
+     */
+    public Map<String, Exception> getFailures() {
+        return failures;
+    }
+
+    /**
+     * Compares the partitions on the threads of the {@link Scheduler}. Partitions which are done before their
+     * turn keep their differences until these have been reported, so at most as many partitions as there are
+     * threads are in flight at once.
+     */
+    private void reportDiffsConcurrently(List<JavaType[]> pairs) {
+        List<Partition> partitions = partition(pairs, threads * PARTITIONS_PER_THREAD);
+        Scheduler.Window<Partition> window = Scheduler.window(threads, threads);
+        try {
+            Iterator<Partition> iter = partitions.iterator();
+            while (iter.hasNext() || !window.isEmpty()) {
+                if (iter.hasNext() && !window.isFull()) {
+                    final Partition partition = iter.next();
+                    window.submit(new Callable<Partition>() {
+                        public Partition call() {
+                            try {
+                                partition.run(null);
+                            } finally {
+                                ApiDifferenceView.clear();
+                            }
+                            return partition;
+                        }
+                    });
+                    continue;
+                }
+                Partition partition = getResult(window);
+                checkHeap();
+                // the limit is checked between classes, as in a single thread, so that a class is reported whole
+                int start = 0;
+                for (int end : partition.classEnds) {
+                    if (isLimitReached()) {
+                        break;
+                    }
+                    for (ApiDifference difference : partition.differences.subList(start, end)) {
+                        listener.reportDiff(difference);
+                    }
+                    start = end;
+                }
+                failures.putAll(partition.failures);
+                if (isLimitReached()) {
+                    return;
+                }
+            }
+        } finally {
+            window.cancel();
+        }
+    }
+
+    private static Partition getResult(Scheduler.Window<Partition> window) {
+        try {
+            return window.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CheckerException("Interrupted while comparing classes", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new CheckerException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Lines up the classes of both versions by name, the same way clirr's <code>Checker</code> does.
+     *
+     * @return pairs of the previous and the current class, either of which may be null
+     */
+    private static List<JavaType[]> pair(JavaType[] origClasses, JavaType[] currentClasses) {
+        List<JavaType[]> pairs = new ArrayList<JavaType[]>(Math.max(origClasses.length, currentClasses.length));
+        CoIterator iter = new CoIterator(new NameComparator(), origClasses, currentClasses);
+        while (iter.hasNext()) {
+            iter.next();
+            pairs.add(new JavaType[] {(JavaType) iter.getLeft(), (JavaType) iter.getRight()});
+        }
+        return pairs;
+    }
+
+    /**
+     * Splits the pairs into contiguous partitions of roughly equal size. A partition only ends at a package
+     * boundary, unless a single package is much larger than the targeted size.
+     */
+    private List<Partition> partition(List<JavaType[]> pairs, int count) {
+        int size = Math.max(1, (pairs.size() + count - 1) / count);
+        List<Partition> partitions = new ArrayList<Partition>(count);
+        int start = 0;
+        String previousPackage = null;
+        for (int i = 0; i < pairs.size(); i++) {
+            String currentPackage = getPackage(getName(pairs.get(i)));
+            int length = i - start;
+            if (length >= 2 * size || (length >= size && !currentPackage.equals(previousPackage))) {
+                partitions.add(new Partition(pairs.subList(start, i)));
+                start = i;
+            }
+            previousPackage = currentPackage;
+        }
+        partitions.add(new Partition(pairs.subList(start, pairs.size())));
+        return partitions;
+    }
+
+    private static String getName(JavaType[] pair) {
+        return pair[0] != null ? pair[0].getName() : pair[1].getName();
+    }
+
+    private static String getPackage(String className) {
+        int index = className.lastIndexOf('.');
+        return index < 0 ? "" : className.substring(0, index);
+    }
+
+    /**
+     * A contiguous run of class pairs with its own checks, so that partitions can be checked concurrently.
+     */
+    private final class Partition implements ApiDiffDispatcher {
+        private final List<JavaType[]> pairs;
+
+        private final ScopeSelector scopeSelector = new ScopeSelector();
+
+        private final List<ClassChangeCheck> classChecks;
+
+        private final List<ApiDifference> differences = new ArrayList<ApiDifference>();
+
+        private final Map<String, Exception> failures = new LinkedHashMap<String, Exception>();
+
+        /**
+         * Where the differences of each checked class end in {@link #differences}, when they are kept.
+         */
+        private final List<Integer> classEnds = new ArrayList<Integer>();
+
+        Partition(List<JavaType[]> pairs) {
+            this.pairs = pairs;
+            classChecks = engine.createClassChecks(this, scopeSelector);
+        }
+
+        /**
+         * Checks all pairs of this partition.
+         *
+         * @param listener the listener to report the differences of each pair to once it has been checked,
+         *                 or null, to keep all differences in {@link #differences}
+         */
+        void run(DiffListener listener) {
+            for (JavaType[] pair : pairs) {
+                if (listener != null ? isLimitReached() : aborted) {
+                    break;
+                }
+                check(getName(pair), pair, listener);
+                if (listener != null) {
+                    checkHeap();
+                }
+            }
+        }
+
+        /**
+         * Checks a single pair, unless its differences are reused, in which case the pair is not needed.
+         *
+         * @param listener the listener to report the differences of the pair to, or null, to keep them in
+         *                 {@link #differences}
+         */
+        void check(String className, JavaType[] pair, DiffListener listener) {
+            List<ApiDifference> reused = reusedDifferences.get(className);
+            if (reused != null) {
+                differences.addAll(reused);
+            } else {
+                int mark = differences.size();
+                try {
+                    check(pair[0], pair[1]);
+                } catch (Exception e) {
+                    // BCEL throws ClassNotFoundException without declaring it
+                    if (!(e instanceof CheckerException || e instanceof ClassNotFoundException)) {
+                        throw e;
+                    }
+                    differences.subList(mark, differences.size()).clear();
+                    failures.put(className, e);
+                    return;
+                }
+            }
+            if (listener != null) {
+                for (ApiDifference difference : differences) {
+                    listener.reportDiff(difference);
+                }
+                differences.clear();
+            } else {
+                classEnds.add(Integer.valueOf(differences.size()));
+            }
+        }
+
+        public void fireDiff(ApiDifference difference) {
+            if (isReported(difference.getMaximumSeverity())) {
+                differences.add(difference);
+            }
+        }
+
+        private void check(JavaType orig, JavaType current) {
+            if (orig == null) {
+                // a new class is never more than informational, so don't even work out its scope
+                if (isReported(Severity.INFO) && scopeSelector.isSelected(current.getEffectiveScope())) {
+                    fireDiff(new ApiDifference(MSG_CLASS_ADDED, Severity.INFO, current.getName(), null, null, null));
+                }
+            } else if (current == null) {
+                Scope scope = orig.getEffectiveScope();
+                if (scopeSelector.isSelected(scope)) {
+                    Severity severity = scope.isLessVisibleThan(Scope.PROTECTED) ? Severity.INFO : Severity.ERROR;
+                    fireDiff(new ApiDifference(MSG_CLASS_REMOVED, severity, orig.getName(), null, null, null));
+                }
+            } else {
+                if (!isReported(Severity.INFO)) {
+                    current = withoutInformationalMembers(orig, current);
+                }
+                for (int i = 0; i < classChecks.size(); i++) {
+                    if (!classChecks.get(i).check(orig, current)) {
+                        break;
+                    }
+                }
+            }
+        }
+    }
+}
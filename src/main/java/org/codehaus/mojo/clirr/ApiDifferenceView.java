@@ -0,0 +1,169 @@
+package org.codehaus.mojo.clirr;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import net.sf.clirr.core.ApiDifference;
+import net.sf.clirr.core.MessageTranslator;
+
+/**
+ * What the ignored differences and the listeners need to know about a reported difference, which is worked out
+ * once for each difference instead of once for each rule or listener: its message arguments, the path form of its
+ * class, its method signature without the visibility and its report text.
+ * <p>
+ * The view of the difference that was reported last is kept for each thread, so that everything a difference is
+ * passed to gets the same view from {@link #of(ApiDifference)}. A thread which is handed a difference by another
+ * one takes over its view with {@link #adopt(ApiDifferenceView)}; what has been worked out may then be read by
+ * several threads. Threads which are done reporting let go of their view with {@link #clear()}, as pooled threads
+ * would keep it, and with it the difference, for as long as they live.
+ *
+ * @since 2.9
+ */
+final class ApiDifferenceView {
+    /**
+     * Translates differences into their arguments, see {@link DifferenceArguments}.
+     */
+    private static final MessageTranslator ARGS_EXTRACTOR = new MessageTranslator();
+
+    private static final MessageTranslator REPORT_TRANSLATOR = new MessageTranslator();
+
+    private static final String[] NO_ARGUMENTS = new String[0];
+
+    static {
+        ARGS_EXTRACTOR.setResourceName(DifferenceArguments.class.getName());
+    }
+
+    private static final ThreadLocal<ApiDifferenceView> LAST = new ThreadLocal<ApiDifferenceView>();
+
+    private final ApiDifference difference;
+
+    private volatile String classPath;
+
+    private volatile String methodSignature;
+
+    private volatile String[] arguments;
+
+    private volatile String report;
+
+    private ApiDifferenceView(ApiDifference difference) {
+        this.difference = difference;
+    }
+
+    /**
+     * @return the view of the difference, which is the same as that of the last call if it was for the same
+     *         difference
+     */
+    static ApiDifferenceView of(ApiDifference difference) {
+        ApiDifferenceView view = LAST.get();
+        if (view == null || view.difference != difference) {
+            view = new ApiDifferenceView(difference);
+            LAST.set(view);
+        }
+        return view;
+    }
+
+    /**
+     * Makes a view which has been created by another thread the last one of the current thread.
+     */
+    static void adopt(ApiDifferenceView view) {
+        LAST.set(view);
+    }
+
+    /**
+     * Lets go of the view of the current thread.
+     */
+    static void clear() {
+        LAST.remove();
+    }
+
+    public ApiDifference getDifference() {
+        return difference;
+    }
+
+    public int getId() {
+        return difference.getMessage().getId();
+    }
+
+    /**
+     * @return the name of the affected class, with slashes instead of dots
+     */
+    public String getClassPath() {
+        if (classPath == null) {
+            classPath = difference.getAffectedClass().replace('.', '/');
+        }
+        return classPath;
+    }
+
+    /**
+     * @return the signature of the affected method without its visibility, or null, if no method is affected
+     */
+    public String getMethodSignature() {
+        if (methodSignature == null && difference.getAffectedMethod() != null) {
+            String method = difference.getAffectedMethod();
+            methodSignature = method.substring(method.indexOf(' ') + 1);
+        }
+        return methodSignature;
+    }
+
+    /**
+     * @return the arguments of the message of the difference, such as the new type of a field
+     */
+    public String[] getArguments() {
+        if (arguments == null) {
+            String[] report =
+                    difference.getReport(ARGS_EXTRACTOR).split(String.valueOf(DifferenceArguments.SEPARATOR), -1);
+            int count = 0;
+            while (count < report.length
+                    && !report[count].equals("{" + (DifferenceArguments.FIRST_ARGUMENT + count) + "}")) {
+                count++;
+            }
+            String[] parsed = NO_ARGUMENTS;
+            if (count > 0) {
+                parsed = new String[count];
+                System.arraycopy(report, 0, parsed, 0, count);
+            }
+            arguments = parsed;
+        }
+        return arguments;
+    }
+
+    /**
+     * @return an argument of the message of the difference
+     * @throws IllegalArgumentException if the difference does not have the argument
+     */
+    public String getArgument(int index) {
+        String[] args = getArguments();
+        if (index >= args.length) {
+            throw new IllegalArgumentException("The difference " + difference + " has no argument " + (index + 1));
+        }
+        return args[index];
+    }
+
+    /**
+     * @return an argument of the message of the difference which is a number, such as a class format version
+     */
+    public int getIntArgument(int index) {
+        return Integer.parseInt(getArgument(index));
+    }
+
+    /**
+     * @return the text of the difference, in the language of the default locale
+     */
+    public String getReport() {
+        if (report == null) {
+            report = difference.getReport(REPORT_TRANSLATOR);
+        }
+        return report;
+    }
+}
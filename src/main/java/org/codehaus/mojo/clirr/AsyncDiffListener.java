@@ -0,0 +1,144 @@
+package org.codehaus.mojo.clirr;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.clirr.core.ApiDifference;
+import net.sf.clirr.core.CheckerException;
+import net.sf.clirr.core.DiffListener;
+
+/**
+ * Hands the differences to a listener on a thread of its own, through a bounded queue, so that a listener which
+ * writes slowly, to a file or to the console, does not hold up the comparison. The comparison waits when the queue
+ * is full. The listener gets the differences in the order they were reported in, and has got all of them, and has
+ * been stopped, when {@link #stop()} returns.
+ * <p>
+ * A failure of the listener is thrown on the comparing thread, by the next call of this listener.
+ *
+ * @since 2.9
+ */
+final class AsyncDiffListener implements DiffListener {
+    /**
+     * The last element of the queue.
+     */
+    private static final Object STOP = new Object();
+
+    private final DiffListener listener;
+
+    private final BlockingQueue<Object> queue;
+
+    private Thread consumer;
+
+    private volatile Throwable failure;
+
+    /**
+     * @param listener  the listener to hand the differences to
+     * @param queueSize the number of differences which may wait for the listener
+     */
+    AsyncDiffListener(DiffListener listener, int queueSize) {
+        this.listener = listener;
+        this.queue = new ArrayBlockingQueue<Object>(Math.max(1, queueSize));
+    }
+
+    public void start() {
+        listener.start();
+
+        failure = null;
+        queue.clear();
+        consumer = new Thread(
+                new Runnable() {
+                    public void run() {
+                        consume();
+                    }
+                },
+                "clirr-" + listener.getClass().getSimpleName());
+        consumer.setDaemon(true);
+        consumer.setContextClassLoader(AsyncDiffListener.class.getClassLoader());
+        consumer.start();
+    }
+
+    public void reportDiff(ApiDifference difference) {
+        checkFailure();
+        // the view has been worked out for the ignored differences already, pass it on
+        put(ApiDifferenceView.of(difference));
+    }
+
+    /**
+     * Waits until the listener has got all differences, then stops it.
+     */
+    public void stop() {
+        try {
+            put(STOP);
+            consumer.join();
+            checkFailure();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CheckerException("Interrupted while waiting for " + consumer.getName(), e);
+        } finally {
+            listener.stop();
+        }
+    }
+
+    private void consume() {
+        try {
+            while (true) {
+                Object element = queue.take();
+                if (element == STOP) {
+                    return;
+                }
+                ApiDifferenceView view = (ApiDifferenceView) element;
+                ApiDifferenceView.adopt(view);
+                listener.reportDiff(view.getDifference());
+            }
+        } catch (InterruptedException e) {
+            failure = e;
+        } catch (RuntimeException e) {
+            failure = e;
+        } catch (Error e) {
+            failure = e;
+        } finally {
+            ApiDifferenceView.clear();
+        }
+    }
+
+    /**
+     * Adds to the queue, waiting while it is full unless the listener has failed, as it then does not take
+     * anything anymore.
+     */
+    private void put(Object element) {
+        try {
+            while (!queue.offer(element, 100, TimeUnit.MILLISECONDS)) {
+                checkFailure();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CheckerException("Interrupted while waiting for " + consumer.getName(), e);
+        }
+    }
+
+    private void checkFailure() {
+        Throwable cause = failure;
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        } else if (cause != null) {
+            throw new CheckerException(consumer.getName() + " has been interrupted", cause);
+        }
+    }
+}
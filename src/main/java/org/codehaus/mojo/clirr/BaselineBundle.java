@@ -0,0 +1,274 @@
+package org.codehaus.mojo.clirr;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.maven.artifact.Artifact;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * A self-contained archive of everything needed to compare against a baseline: the baseline jars
+ * themselves and the jars of their transitive dependencies. Every entry is recorded with its SHA-256
+ * checksum, which is verified when the bundle is extracted, so that a bundle can be handed to build
+ * agents without access to a repository.
+ *
+ * @since 2.9
+ */
+class BaselineBundle {
+    static final String FORMAT_VERSION = "1";
+
+    private static final String DESCRIPTOR = "META-INF/clirr-bundle.properties";
+
+    private static final String BASELINE_DIR = "baseline/";
+
+    private static final String DEPENDENCIES_DIR = "dependencies/";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String version;
+
+    private final List<File> baselineFiles;
+
+    private final List<File> dependencyFiles;
+
+    private BaselineBundle(String version, List<File> baselineFiles, List<File> dependencyFiles) {
+        this.version = version;
+        this.baselineFiles = baselineFiles;
+        this.dependencyFiles = dependencyFiles;
+    }
+
+    /**
+     * @return the version of the first baseline artifact, as it would be shown in the report
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    public File[] getBaselineFiles() {
+        return baselineFiles.toArray(new File[baselineFiles.size()]);
+    }
+
+    public List<File> getDependencyFiles() {
+        return dependencyFiles;
+    }
+
+    /**
+     * Writes a new bundle.
+     *
+     * @param bundle       the file to write to
+     * @param baseline     the resolved baseline artifacts
+     * @param dependencies the resolved transitive dependencies of the baseline artifacts
+     * @throws IOException if one of the artifacts cannot be read or the bundle cannot be written
+     */
+    public static void write(File bundle, Collection<Artifact> baseline, Collection<Artifact> dependencies)
+            throws IOException {
+        Properties descriptor = new Properties();
+        descriptor.setProperty("format", FORMAT_VERSION);
+
+        File parent = bundle.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(bundle));
+        try {
+            out.setLevel(Deflater.BEST_COMPRESSION);
+
+            int i = 0;
+            for (Artifact artifact : baseline) {
+                String entry = BASELINE_DIR + i + "-" + artifact.getFile().getName();
+                String prefix = "baseline." + i;
+                descriptor.setProperty(prefix + ".coordinates", toCoordinates(artifact));
+                descriptor.setProperty(prefix + ".version", artifact.getVersion());
+                descriptor.setProperty(prefix + ".entry", entry);
+                descriptor.setProperty(prefix + ".sha256", copyEntry(out, entry, artifact.getFile()));
+                i++;
+            }
+
+            i = 0;
+            for (Artifact artifact : dependencies) {
+                if (artifact.getFile() == null || !artifact.getFile().isFile()) {
+                    continue;
+                }
+                String entry = DEPENDENCIES_DIR + i + "-" + artifact.getFile().getName();
+                String prefix = "dependency." + i;
+                descriptor.setProperty(prefix + ".coordinates", toCoordinates(artifact));
+                descriptor.setProperty(prefix + ".entry", entry);
+                descriptor.setProperty(prefix + ".sha256", copyEntry(out, entry, artifact.getFile()));
+                i++;
+            }
+
+            out.putNextEntry(new ZipEntry(DESCRIPTOR));
+            descriptor.store(out, "Clirr baseline bundle");
+            out.closeEntry();
+        } finally {
+            IOUtil.close(out);
+        }
+    }
+
+    /**
+     * Extracts a bundle into a directory and verifies the checksums of all extracted entries.
+     *
+     * @param bundle    the bundle to read
+     * @param directory the directory to extract to; its previous content is removed
+     * @return the extracted bundle
+     * @throws IOException if the bundle cannot be read, is of an unknown format or is corrupt
+     */
+    public static BaselineBundle extract(File bundle, File directory) throws IOException {
+        Properties descriptor = readDescriptor(bundle);
+        if (!FORMAT_VERSION.equals(descriptor.getProperty("format"))) {
+            throw new IOException(
+                    "Unsupported baseline bundle format '" + descriptor.getProperty("format") + "' in " + bundle);
+        }
+
+        if (directory.exists()) {
+            FileUtils.deleteDirectory(directory);
+        }
+        directory.mkdirs();
+
+        ZipInputStream in = new ZipInputStream(new FileInputStream(bundle));
+        try {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                String name = entry.getName();
+                if (entry.isDirectory() || !(name.startsWith(BASELINE_DIR) || name.startsWith(DEPENDENCIES_DIR))) {
+                    continue;
+                }
+                File target = new File(directory, name);
+                if (!target.getCanonicalPath().startsWith(directory.getCanonicalPath() + File.separator)) {
+                    throw new IOException("Illegal entry " + name + " in baseline bundle " + bundle);
+                }
+                target.getParentFile().mkdirs();
+                OutputStream out = new FileOutputStream(target);
+                try {
+                    IOUtil.copy(in, out, BUFFER_SIZE);
+                } finally {
+                    IOUtil.close(out);
+                }
+            }
+        } finally {
+            IOUtil.close(in);
+        }
+
+        List<File> baselineFiles = collect(descriptor, "baseline", directory);
+        List<File> dependencyFiles = collect(descriptor, "dependency", directory);
+
+        return new BaselineBundle(descriptor.getProperty("baseline.0.version"), baselineFiles, dependencyFiles);
+    }
+
+    private static Properties readDescriptor(File bundle) throws IOException {
+        ZipFile zip = new ZipFile(bundle);
+        try {
+            ZipEntry entry = zip.getEntry(DESCRIPTOR);
+            if (entry == null) {
+                throw new IOException(bundle + " is not a baseline bundle: " + DESCRIPTOR + " is missing");
+            }
+            Properties descriptor = new Properties();
+            InputStream in = zip.getInputStream(entry);
+            try {
+                descriptor.load(in);
+            } finally {
+                IOUtil.close(in);
+            }
+            return descriptor;
+        } finally {
+            zip.close();
+        }
+    }
+
+    private static List<File> collect(Properties descriptor, String kind, File directory) throws IOException {
+        List<File> files = new ArrayList<File>();
+        for (int i = 0; descriptor.getProperty(kind + "." + i + ".entry") != null; i++) {
+            String entry = descriptor.getProperty(kind + "." + i + ".entry");
+            File file = new File(directory, entry);
+            if (!file.isFile()) {
+                throw new IOException("The baseline bundle is missing its entry " + entry);
+            }
+            String expected = descriptor.getProperty(kind + "." + i + ".sha256");
+            String actual = checksum(file);
+            if (!actual.equals(expected)) {
+                throw new IOException("Checksum mismatch for " + entry + " in the baseline bundle: expected " + expected
+                        + ", got " + actual);
+            }
+            files.add(file);
+        }
+        return files;
+    }
+
+    private static String copyEntry(ZipOutputStream out, String entry, File file) throws IOException {
+        out.putNextEntry(new ZipEntry(entry));
+        DigestInputStream in = new DigestInputStream(new FileInputStream(file), newDigest());
+        try {
+            IOUtil.copy(in, out, BUFFER_SIZE);
+        } finally {
+            IOUtil.close(in);
+        }
+        out.closeEntry();
+        return toHex(in.getMessageDigest().digest());
+    }
+
+    static String checksum(File file) throws IOException {
+        DigestInputStream in = new DigestInputStream(new FileInputStream(file), newDigest());
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (in.read(buffer) != -1) {
+                // just digest
+            }
+        } finally {
+            IOUtil.close(in);
+        }
+        return toHex(in.getMessageDigest().digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by this JVM", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    private static String toCoordinates(Artifact artifact) {
+        return artifact.getGroupId() + ":" + artifact.getArtifactId() + ":" + artifact.getType() + ":"
+                + (artifact.getClassifier() == null ? "" : artifact.getClassifier()) + ":" + artifact.getVersion();
+    }
+}
@@ -0,0 +1,329 @@
+package org.codehaus.mojo.clirr;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import net.sf.clirr.core.CheckerException;
+import net.sf.clirr.core.ClassFilter;
+import net.sf.clirr.core.internal.bcel.BcelJavaType;
+import net.sf.clirr.core.spi.JavaType;
+import org.apache.bcel.classfile.ClassParser;
+import org.apache.bcel.classfile.JavaClass;
+import org.codehaus.plexus.util.DirectoryScanner;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * The classes of one side of a comparison, either a classes directory or a set of jar files. The names of
+ * all classes are known up front, in the order clirr compares classes in, but a class is only read when it
+ * is asked for. Classes of the hierarchy are looked up through a {@link ConcurrentClassRepository} on top of
+ * the source itself and its dependencies, which keeps the classes it has read.
+ *
+ * @since 2.9
+ */
+abstract class ClassSource {
+    private final ClassFilter classFilter;
+
+    private final URLClassLoader loader;
+
+    private final ConcurrentClassRepository repository;
+
+    private final File[] files;
+
+    /**
+     * The locations of the classes, by class name, in the order of {@link String#compareTo(String)}.
+     */
+    private final TreeMap<String, Object> locations = new TreeMap<String, Object>();
+
+    private ClassSource(File[] files, ClassLoader thirdPartyClasses, ClassFilter classFilter)
+            throws MalformedURLException {
+        this.files = files;
+        this.classFilter = classFilter;
+        this.loader = new URLClassLoader(toUrls(files), thirdPartyClasses);
+        this.repository = new ConcurrentClassRepository(loader) {
+            public JavaClass findClass(String className) {
+                // clirr looks up enclosing classes with findClass, which only knows the classes that have
+                // been stored; classes which have not been read yet are read now
+                JavaClass clazz = super.findClass(className);
+                if (clazz == null && locations.containsKey(className)) {
+                    JavaClass parsed = parse(className);
+                    if (ClassSource.this.classFilter.isSelected(parsed)) {
+                        storeClass(parsed);
+                        clazz = parsed;
+                    }
+                }
+                return clazz;
+            }
+        };
+    }
+
+    /**
+     * Creates a source for the classes in a directory.
+     */
+    public static ClassSource forDirectory(File classes, ClassLoader thirdPartyClasses, ClassFilter classFilter)
+            throws MalformedURLException {
+        return new DirectorySource(classes, thirdPartyClasses, classFilter);
+    }
+
+    /**
+     * Creates a source for the classes in jar files, which have to be closed with {@link #close()}.
+     */
+    public static ClassSource forJars(File[] jars, ClassLoader thirdPartyClasses, ClassFilter classFilter)
+            throws MalformedURLException {
+        return new JarSource(jars, thirdPartyClasses, classFilter);
+    }
+
+    /**
+     * @return the names of all classes of this source, sorted the way clirr sorts classes
+     */
+    public List<String> getClassNames() {
+        return new ArrayList<String>(locations.keySet());
+    }
+
+    /**
+     * @return the classes directory or the jar files the classes are read from
+     */
+    public File[] getFiles() {
+        return files;
+    }
+
+    /**
+     * @return whether this source has a class of the given name
+     */
+    public boolean contains(String className) {
+        return locations.containsKey(className);
+    }
+
+    /**
+     * @return the total size of the class files of this source, which is known without reading them
+     */
+    public long getByteCount() {
+        long count = 0;
+        for (Object location : locations.values()) {
+            count += Math.max(0, size(location));
+        }
+        return count;
+    }
+
+    /**
+     * Reads a class without keeping it in the repository, so that it can be garbage collected as soon as
+     * the caller is done with it.
+     *
+     * @param className one of the names of {@link #getClassNames()}
+     * @return the class, or null, if the class filter does not select it
+     */
+    public JavaType load(String className) {
+        JavaClass clazz = parse(className);
+        return classFilter.isSelected(clazz) ? new BcelJavaType(clazz) : null;
+    }
+
+    /**
+     * Reads the names of the direct superclass and interfaces of a class, without resolving them.
+     *
+     * @param className one of the names of {@link #getClassNames()}
+     */
+    public List<String> getSupertypeNames(String className) {
+        JavaClass clazz = parse(className);
+        List<String> names = new ArrayList<String>();
+        if (clazz.getSuperclassName() != null) {
+            names.add(clazz.getSuperclassName());
+        }
+        names.addAll(Arrays.asList(clazz.getInterfaceNames()));
+        return names;
+    }
+
+    /**
+     * Reads all classes selected by the class filter and keeps them in the repository. The other classes are
+     * kept for the repository to load, so that the hierarchies of the classes can still be looked up once the
+     * source has been closed.
+     */
+    public JavaType[] toArray() {
+        List<JavaType> selected = new ArrayList<JavaType>();
+        for (String className : locations.keySet()) {
+            JavaClass clazz = parse(className);
+            if (classFilter.isSelected(clazz)) {
+                selected.add(new BcelJavaType(clazz));
+                repository.storeClass(clazz);
+            } else {
+                repository.addLoadable(clazz);
+            }
+        }
+        return selected.toArray(new JavaType[selected.size()]);
+    }
+
+    /**
+     * Forgets the classes which have been read into the repository, such as those of the hierarchies of the
+     * compared classes. They are read again when they are needed.
+     *
+     * @return the number of classes which have been forgotten
+     */
+    public int evict() {
+        int count = repository.size();
+        repository.clear();
+        return count;
+    }
+
+    /**
+     * Releases the resources held by this source, such as the jar files its class loader has opened. The classes
+     * which have been read can still be used.
+     */
+    public void close() {
+        try {
+            loader.close();
+        } catch (IOException e) {
+            // nothing left to read from it anyway
+        }
+    }
+
+    void addLocation(String path, Object location) {
+        String className = path.substring(0, path.length() - ".class".length()).replace('/', '.');
+        if (!locations.containsKey(className)) {
+            locations.put(className, location);
+        }
+    }
+
+    protected abstract InputStream open(Object location) throws IOException;
+
+    protected abstract String describe(Object location);
+
+    protected abstract long size(Object location);
+
+    private JavaClass parse(String className) {
+        Object location = locations.get(className);
+        InputStream is = null;
+        try {
+            is = open(location);
+            JavaClass clazz = new ClassParser(is, className.replace('.', '/') + ".class").parse();
+            clazz.setRepository(repository);
+            return clazz;
+        } catch (IOException ex) {
+            throw new CheckerException("Cannot read " + describe(location), ex);
+        } finally {
+            IOUtil.close(is);
+        }
+    }
+
+    private static URL[] toUrls(File[] files) throws MalformedURLException {
+        URL[] urls = new URL[files.length];
+        for (int i = 0; i < files.length; i++) {
+            urls[i] = files[i].toURI().toURL();
+        }
+        return urls;
+    }
+
+    private static final class DirectorySource extends ClassSource {
+        DirectorySource(File classes, ClassLoader thirdPartyClasses, ClassFilter classFilter)
+                throws MalformedURLException {
+            super(new File[] {classes}, thirdPartyClasses, classFilter);
+
+            DirectoryScanner scanner = new DirectoryScanner();
+            scanner.setBasedir(classes);
+            scanner.setIncludes(new String[] {"**/*.class"});
+            scanner.scan();
+
+            String[] files = scanner.getIncludedFiles();
+            for (int i = 0; i < files.length; i++) {
+                addLocation(files[i].replace(File.separatorChar, '/'), new File(classes, files[i]));
+            }
+        }
+
+        protected InputStream open(Object location) throws IOException {
+            return new FileInputStream((File) location);
+        }
+
+        protected String describe(Object location) {
+            return location.toString();
+        }
+
+        protected long size(Object location) {
+            return ((File) location).length();
+        }
+    }
+
+    private static final class JarSource extends ClassSource {
+        private final List<ZipFile> zips = new ArrayList<ZipFile>();
+
+        JarSource(File[] jars, ClassLoader thirdPartyClasses, ClassFilter classFilter) throws MalformedURLException {
+            super(jars, thirdPartyClasses, classFilter);
+
+            for (int i = 0; i < jars.length; i++) {
+                ZipFile zip;
+                try {
+                    zip = new ZipFile(jars[i]);
+                } catch (IOException e) {
+                    close();
+                    throw new CheckerException("Cannot open " + jars[i] + " for reading", e);
+                }
+                zips.add(zip);
+                for (Enumeration entries = zip.entries(); entries.hasMoreElements(); ) {
+                    ZipEntry entry = (ZipEntry) entries.nextElement();
+                    if (!entry.isDirectory() && entry.getName().endsWith(".class")) {
+                        addLocation(entry.getName(), new JarLocation(zip, entry));
+                    }
+                }
+            }
+        }
+
+        protected InputStream open(Object location) throws IOException {
+            JarLocation jarLocation = (JarLocation) location;
+            return jarLocation.zip.getInputStream(jarLocation.entry);
+        }
+
+        protected String describe(Object location) {
+            JarLocation jarLocation = (JarLocation) location;
+            return jarLocation.entry.getName() + " from " + jarLocation.zip.getName();
+        }
+
+        protected long size(Object location) {
+            return ((JarLocation) location).entry.getSize();
+        }
+
+        public void close() {
+            for (ZipFile zip : zips) {
+                try {
+                    zip.close();
+                } catch (IOException e) {
+                    // nothing left to read from it anyway
+                }
+            }
+            zips.clear();
+            super.close();
+        }
+    }
+
+    private static final class JarLocation {
+        private final ZipFile zip;
+
+        private final ZipEntry entry;
+
+        JarLocation(ZipFile zip, ZipEntry entry) {
+            this.zip = zip;
+            this.entry = entry;
+        }
+    }
+}
@@ -25,13 +25,9 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Set;
 
-import net.sf.clirr.core.ApiDifference;
-import net.sf.clirr.core.Checker;
 import net.sf.clirr.core.ClassFilter;
-import net.sf.clirr.core.PlainDiffListener;
 import net.sf.clirr.core.Severity;
 import net.sf.clirr.core.XmlDiffListener;
-import net.sf.clirr.core.internal.bcel.BcelTypeArrayBuilder;
 import net.sf.clirr.core.spi.JavaType;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.resolver.ArtifactNotFoundException;
@@ -66,6 +62,45 @@ public class ClirrArbitraryCheckMojo extends AbstractClirrMojo {
      */
     private boolean failOnWarning;
 
+    /**
+     * Whether to stop comparing classes after the first class with an error. Only used when
+     * <code>failOnError</code> is set, since the build fails anyway; the classes which had errors in the
+     * previous run are compared first. The reports then only contain the differences found up to that point.
+     *
+     * @parameter property="clirr.failFast" default-value="false"
+     * @since 2.9
+     */
+    private boolean failFast;
+
+    /**
+     * The number of errors to stop comparing classes at, like <code>failFast</code> for more than one error.
+     * 0 compares all classes.
+     *
+     * @parameter property="clirr.maxErrors" default-value="0"
+     * @since 2.9
+     */
+    private int maxErrors;
+
+    /**
+     * Whether to only count the differences, without keeping them in memory, which suits large comparisons that
+     * only gate the build. The differences which fail the build are then only listed with <code>logResults</code>,
+     * which lists them as they are found.
+     *
+     * @parameter property="clirr.countsOnly" default-value="false"
+     * @since 2.9
+     */
+    private boolean countsOnly;
+
+    /**
+     * The file which keeps the names of the classes which had errors, so that the next run with
+     * <code>failFast</code> or <code>maxErrors</code> compares them first. It is neither read nor written when
+     * the comparison does not stop at a number of errors.
+     *
+     * @parameter default-value="${project.build.directory}/clirr-arbitrary-errors.txt"
+     * @since 2.9
+     */
+    private File errorHintFile;
+
     /**
      * @component
      */
@@ -140,14 +175,33 @@ public class ClirrArbitraryCheckMojo extends AbstractClirrMojo {
         getLog().info(i18n.format("clirr-report", locale, "check.clirr.success", args));
     }
 
+    protected int getMaxErrors() {
+        return failOnError ? (failFast ? 1 : maxErrors) : 0;
+    }
+
+    protected File getErrorHintFile() {
+        return errorHintFile;
+    }
+
+    protected boolean isCountsOnly() {
+        return countsOnly;
+    }
+
     private void log(ClirrDiffListener listener, Severity severity) {
+        // logResults has listed them already
         if (!logResults) {
+            if (listener.isCountsOnly()) {
+                getLog().info("Only the numbers of differences have been kept, use logResults to list them");
+                return;
+            }
             LogDiffListener l = new LogDiffListener(getLog());
-            for (Iterator i = listener.getApiDifferences().iterator(); i.hasNext(); ) {
-                ApiDifference difference = (ApiDifference) i.next();
-                if (difference.getMaximumSeverity().equals(severity)) {
-                    l.reportDiff(difference);
+            DifferenceStore.Cursor differences = listener.openDifferences(severity);
+            try {
+                while (differences.hasNext()) {
+                    l.reportDiff(differences.next());
                 }
+            } finally {
+                differences.close();
             }
         }
     }
@@ -168,10 +222,7 @@ public class ClirrArbitraryCheckMojo extends AbstractClirrMojo {
         }
 
         try {
-            for (Iterator iter = artifactSet.iterator(); iter.hasNext(); ) {
-                Artifact artifact = (Artifact) iter.next();
-                resolver.resolve(artifact, project.getRemoteArtifactRepositories(), localRepository);
-            }
+            resolvePreviousArtifacts(artifactSet);
 
             final List dependencies = getTransitiveDependencies(artifactSet);
 
@@ -180,9 +231,9 @@ public class ClirrArbitraryCheckMojo extends AbstractClirrMojo {
             int i = 0;
             for (Iterator iter = artifactSet.iterator(); iter.hasNext(); ) {
                 Artifact artifact = (Artifact) iter.next();
-                files[i++] = new File(localRepository.getBasedir(), localRepository.pathOf(artifact));
+                files[i++] = getFile(artifact);
             }
-            return BcelTypeArrayBuilder.createClassSet(files, origDepCL, classFilter);
+            return createClassSet(files, origDepCL, classFilter);
         } catch (ProjectBuildingException e) {
             throw new MojoExecutionException("Failed to build project for previous artifact: " + e.getMessage(), e);
         } catch (InvalidDependencyVersionException e) {
@@ -197,7 +248,7 @@ public class ClirrArbitraryCheckMojo extends AbstractClirrMojo {
     }
 
     protected ClirrDiffListener executeClirr(Severity minSeverity) throws MojoExecutionException, MojoFailureException {
-        ClirrDiffListener listener = new ClirrDiffListener();
+        ClirrDiffListener listener = createResultListener(isCountsOnly());
 
         ClassFilter classFilter = new ClirrClassFilter(includes, excludes);
 
@@ -205,9 +256,6 @@ public class ClirrArbitraryCheckMojo extends AbstractClirrMojo {
 
         JavaType[] currentClasses = resolveClasses(newComparisonArtifacts, classFilter);
 
-        // Create a Clirr checker and execute
-        Checker checker = new Checker();
-
         List listeners = new ArrayList();
 
         listeners.add(listener);
@@ -223,7 +271,7 @@ public class ClirrArbitraryCheckMojo extends AbstractClirrMojo {
 
         if (textOutputFile != null) {
             try {
-                listeners.add(new PlainDiffListener(textOutputFile.getAbsolutePath()));
+                listeners.add(new TextDiffListener(textOutputFile.getAbsolutePath()));
             } catch (IOException e) {
                 throw new MojoExecutionException(
                         "Error adding '" + textOutputFile + "' for output: " + e.getMessage(), e);
@@ -234,9 +282,11 @@ public class ClirrArbitraryCheckMojo extends AbstractClirrMojo {
             listeners.add(new LogDiffListener(getLog()));
         }
 
-        checker.addDiffListener(new DelegatingListener(listeners, minSeverity, getAllIgnored()));
-
-        checker.reportDiffs(origClasses, currentClasses);
+        DelegatingListener delegatingListener = new DelegatingListener(listeners, minSeverity, getAllIgnored());
+        delegatingListener.setStatisticsFile(ruleStatisticsFile, getLog());
+        delegatingListener.setQueueSize(outputQueueSize);
+        reportDiffs(delegatingListener, listener, minSeverity, origClasses, currentClasses);
+        logStatistics(delegatingListener);
 
         return listener;
     }
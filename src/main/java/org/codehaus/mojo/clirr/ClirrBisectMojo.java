@@ -0,0 +1,247 @@
+package org.codehaus.mojo.clirr;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sf.clirr.core.ApiDifference;
+import net.sf.clirr.core.ClassFilter;
+import net.sf.clirr.core.DiffListenerAdapter;
+import net.sf.clirr.core.spi.JavaType;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+
+/**
+ * Find the release which introduced a difference, such as one a user of the library ran into. The first released
+ * version in a range is compared against later ones, picked by a binary search, until the first release with the
+ * difference is found. This takes about log2(n) comparisons for n releases, instead of n comparisons.
+ * <p>
+ * The difference is described the same way as the <code>ignored</code> differences, and a release has the
+ * difference if it would have been ignored by it. The search assumes that a difference stays once it has been
+ * introduced.
+ *
+ * @goal bisect
+ * @requiresProject true
+ * @requiresDependencyResolution compile
+ * @since 2.9
+ */
+public class ClirrBisectMojo extends AbstractClirrMojo {
+    /**
+     * The range of the versions to search, for instance <code>[2.0,3.0)</code>. The first released version in the
+     * range is the one all others are compared with, so it should not have the difference yet.
+     *
+     * @parameter property="clirr.comparisonVersions"
+     * @required
+     */
+    private String comparisonVersions;
+
+    /**
+     * The type of the difference to look for, such as <code>7002</code> for a removed method.
+     *
+     * @parameter property="clirr.differenceType"
+     * @required
+     */
+    private int differenceType;
+
+    /**
+     * The class with the difference, as a pattern like the <code>className</code> of the ignored differences.
+     *
+     * @parameter property="clirr.className" default-value="**"
+     */
+    private String className;
+
+    /**
+     * The method with the difference, as a pattern like the <code>method</code> of the ignored differences.
+     *
+     * @parameter property="clirr.method"
+     */
+    private String method;
+
+    /**
+     * The field with the difference, as a pattern like the <code>field</code> of the ignored differences.
+     *
+     * @parameter property="clirr.field"
+     */
+    private String field;
+
+    /**
+     * The previous type, for differences which change a type.
+     *
+     * @parameter property="clirr.from"
+     */
+    private String from;
+
+    /**
+     * The new type, for differences which change a type.
+     *
+     * @parameter property="clirr.to"
+     */
+    private String to;
+
+    /**
+     * The classes of the first released version, which every comparison reads. The other versions are each read
+     * once, and are let go of after their comparison.
+     */
+    private JavaType[] firstModel;
+
+    protected void doExecute() throws MojoExecutionException, MojoFailureException {
+        Difference difference = new Difference();
+        difference.setDifferenceType(differenceType);
+        difference.setClassName(className);
+        difference.setMethod(method);
+        difference.setField(field);
+        difference.setFrom(from);
+        difference.setTo(to);
+
+        List<Artifact> versions = getReleasedVersions(comparisonVersions);
+        if (versions.size() < 2) {
+            getLog().info("There are fewer than two released versions in " + comparisonVersions
+                    + ", nothing to search");
+            return;
+        }
+        ClassFilter classFilter = createClassFilter();
+
+        Artifact first = versions.get(0);
+        int last = versions.size() - 1;
+        List<ApiDifference> found = compare(first, versions.get(last), difference, classFilter);
+        if (found.isEmpty()) {
+            getLog().info("None of the released versions in " + comparisonVersions + " has " + difference);
+            return;
+        }
+
+        // versions.get(low) does not have the difference, versions.get(high) has it
+        int low = 0;
+        int high = last;
+        while (high - low > 1) {
+            int middle = (low + high) >>> 1;
+            List<ApiDifference> middleFound = compare(first, versions.get(middle), difference, classFilter);
+            if (middleFound.isEmpty()) {
+                low = middle;
+            } else {
+                high = middle;
+                found = middleFound;
+            }
+        }
+
+        getLog().info("The difference was introduced in version "
+                + versions.get(high).getVersion() + ", the version before is "
+                + versions.get(low).getVersion() + ":");
+        LogDiffListener log = new LogDiffListener(getLog());
+        for (ApiDifference apiDifference : found) {
+            log.reportDiff(apiDifference);
+        }
+    }
+
+    /**
+     * Only the classes the difference can be reported for need to be compared, as differences are reported for
+     * the class they were found in.
+     */
+    private ClassFilter createClassFilter() {
+        final ClassFilter selected = new ClirrClassFilter(includes, excludes);
+        final GlobMatcher matcher = GlobMatcher.compile(className);
+        return new ClassFilter() {
+            public boolean isSelected(JavaClass clazz) {
+                return selected.isSelected(clazz)
+                        && (matcher == null || matcher.matchesClassName(clazz.getClassName()));
+            }
+        };
+    }
+
+    /**
+     * Compares two released versions.
+     *
+     * @return the differences matching <code>difference</code>, which are empty if the newer version does not
+     *         have it
+     */
+    private List<ApiDifference> compare(Artifact older, Artifact newer, Difference difference, ClassFilter classFilter)
+            throws MojoExecutionException, MojoFailureException {
+        getLog().info("Comparing version " + newer.getVersion() + " with " + older.getVersion());
+
+        MatchListener listener = new MatchListener(difference);
+        // the engine and the consumers apply as in the other goals; bisect has no error limit to count errors for
+        ApiChecker checker = createChecker(listener, null, threads, null);
+        if (firstModel == null) {
+            firstModel = getModel(older, classFilter);
+        }
+        JavaType[] origClasses = firstModel;
+        JavaType[] currentClasses = getModel(newer, classFilter);
+        try {
+            checker.reportDiffs(origClasses, currentClasses);
+        } catch (IllegalArgumentException e) {
+            // the difference lacks parameters its type needs
+            throw new MojoFailureException(e.getMessage());
+        }
+        return listener.getFound();
+    }
+
+    private JavaType[] getModel(Artifact version, ClassFilter classFilter) throws MojoExecutionException {
+        ClassLoader origDepCL = resolveBaseline(version);
+        try {
+            return createClassSet(new File[] {getFile(version)}, origDepCL, classFilter);
+        } catch (MalformedURLException e) {
+            throw new MojoExecutionException("Error creating classloader for " + version, e);
+        }
+    }
+
+    /**
+     * Collects the differences matching the difference searched for. Differences which can only be matched as a
+     * group, like changed parameters of a method, are matched once all differences are known.
+     */
+    private static final class MatchListener extends DiffListenerAdapter {
+        private final Difference difference;
+
+        private final List<ApiDifference> found = new ArrayList<ApiDifference>();
+
+        private final Map<Object, List<ApiDifference>> deferred = new LinkedHashMap<Object, List<ApiDifference>>();
+
+        MatchListener(Difference difference) {
+            this.difference = difference;
+        }
+
+        public void reportDiff(ApiDifference apiDifference) {
+            Difference.Result result = difference.matches(apiDifference);
+            if (result.getCode() == Difference.Result.MATCHED) {
+                found.add(apiDifference);
+            } else if (result.getCode() == Difference.Result.DEFERRED_MATCH) {
+                List<ApiDifference> group = deferred.get(result.getDifferentiator());
+                if (group == null) {
+                    group = new ArrayList<ApiDifference>();
+                    deferred.put(result.getDifferentiator(), group);
+                }
+                group.add(apiDifference);
+            }
+        }
+
+        public void stop() {
+            for (List<ApiDifference> group : deferred.values()) {
+                if (difference.resolveDefferedMatches(group)) {
+                    found.addAll(group);
+                }
+            }
+            deferred.clear();
+        }
+
+        List<ApiDifference> getFound() {
+            return found;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package org.codehaus.mojo.clirr;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import net.sf.clirr.core.ClassFilter;
+import net.sf.clirr.core.DiffListener;
+import net.sf.clirr.core.Severity;
+import net.sf.clirr.core.spi.JavaType;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Check for compatibility with every released version in a range, such as all releases of the current major
+ * version. The current classes are read once and compared against all versions, several versions at a time, and
+ * the results are summed up in a table with a row per version.
+ * <p>
+ * Each version is compared with the configured engine and consumers, and its differences move to files past
+ * <code>maxDifferencesInMemory</code>. The execution strategy and <code>memoryBudget</code> do not apply: the
+ * classes of a version are read at once, and are held until its comparison is done.
+ *
+ * @goal check-matrix
+ * @phase verify
+ * @requiresDependencyResolution compile
+ * @since 2.9
+ */
+public class ClirrCheckMatrixMojo extends AbstractClirrMojo {
+    /**
+     * The range of the versions to compare against, for instance <code>[2.0,)</code>. Every released version in
+     * the range is compared against.
+     *
+     * @parameter property="clirr.comparisonVersions"
+     * @required
+     */
+    private String comparisonVersions;
+
+    /**
+     * Whether to fail if any of the versions has errors.
+     *
+     * @parameter property="failOnError" default-value="true"
+     */
+    private boolean failOnError;
+
+    /**
+     * The file to write the table of the results to. If omitted, the table is only logged.
+     *
+     * @parameter property="clirr.matrixFile" default-value="${project.build.directory}/clirr-matrix.txt"
+     */
+    private File matrixFile;
+
+    /**
+     * The number of versions to compare at once. Each version being compared holds its classes and those of its
+     * dependencies in memory. Defaults to the number of versions, but at most one per processor.
+     *
+     * @parameter property="clirr.versionThreads"
+     */
+    private int versionThreads;
+
+    protected void doExecute() throws MojoExecutionException, MojoFailureException {
+        if (!classesDirectory.exists()) {
+            getLog().info("Not checking compatibility as there are no classes generated by the project");
+            return;
+        }
+        Severity minSeverity = convertSeverity(this.minSeverity);
+        ClassFilter classFilter = new ClirrClassFilter(includes, excludes);
+
+        List<Artifact> baselines = getReleasedVersions(comparisonVersions);
+        if (baselines.isEmpty()) {
+            getLog().info("No released version in " + comparisonVersions + " was found");
+            return;
+        }
+
+        ClassSource currentSource = resolveCurrentClasses(classFilter);
+        JavaType[] currentClasses = currentSource.toArray();
+        currentSource.close();
+
+        List<Difference> ignored = getAllIgnored();
+        // the consumers are read here, before the comparisons share them
+        getUsageIndex();
+        List<Row> rows = new ArrayList<Row>();
+        // a version is only resolved once there is room for its comparison, which keeps the number of versions whose
+        // classes are held at once to the number of threads; the resolution itself stays on this thread, as the
+        // Maven 2 resolution is not thread-safe
+        int threads = versionThreads > 0
+                ? versionThreads
+                : Math.min(baselines.size(), Runtime.getRuntime().availableProcessors());
+        Scheduler.Window<Row> window = Scheduler.window(threads, threads);
+        try {
+            Iterator<Artifact> iter = baselines.iterator();
+            while (iter.hasNext() || !window.isEmpty()) {
+                if (iter.hasNext() && !window.isFull()) {
+                    Artifact baseline = iter.next();
+                    window.submit(createComparison(
+                            baseline, resolveBaseline(baseline), currentClasses, classFilter, minSeverity, ignored));
+                } else {
+                    rows.add(getResult(window));
+                }
+            }
+        } finally {
+            window.cancel();
+        }
+
+        report(rows);
+    }
+
+    private Callable<Row> createComparison(
+            final Artifact baseline,
+            final ClassLoader origDepCL,
+            final JavaType[] currentClasses,
+            final ClassFilter classFilter,
+            final Severity minSeverity,
+            final List<Difference> ignored) {
+        return new Callable<Row>() {
+            public Row call() throws MojoExecutionException, MalformedURLException {
+                JavaType[] origClasses = createClassSet(new File[] {getFile(baseline)}, origDepCL, classFilter);
+                // the differences are only listed when they fail the build
+                ClirrDiffListener listener = createResultListener(!failOnError);
+                List<DiffListener> listeners = new ArrayList<DiffListener>();
+                listeners.add(listener);
+                ApiChecker checker = createChecker(
+                        new DelegatingListener(listeners, minSeverity, ignored), listener, 1, minSeverity);
+                checker.reportDiffs(origClasses, currentClasses);
+                return new Row(
+                        baseline.getVersion(), listener, checker.getFailures().size());
+            }
+        };
+    }
+
+    private Row getResult(Scheduler.Window<Row> window) throws MojoExecutionException {
+        try {
+            return window.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while comparing versions", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof MojoExecutionException) {
+                throw (MojoExecutionException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new MojoExecutionException("Error comparing versions: " + cause.getMessage(), cause);
+        }
+    }
+
+    private void report(List<Row> rows) throws MojoExecutionException, MojoFailureException {
+        int width = "Version".length();
+        for (Row row : rows) {
+            width = Math.max(width, row.version.length());
+        }
+
+        List<String> lines = new ArrayList<String>();
+        lines.add(pad("Version", width) + "  Errors  Warnings  Infos  Unchecked");
+        List<String> incompatible = new ArrayList<String>();
+        for (Row row : rows) {
+            int errors = row.listener.getSeverityCount(Severity.ERROR);
+            lines.add(pad(row.version, width) + "  " + pad(String.valueOf(errors), 6) + "  "
+                    + pad(String.valueOf(row.listener.getSeverityCount(Severity.WARNING)), 8) + "  "
+                    + pad(String.valueOf(row.listener.getSeverityCount(Severity.INFO)), 5) + "  "
+                    + row.failures);
+            if (errors > 0) {
+                incompatible.add(row.version);
+            }
+        }
+
+        for (String line : lines) {
+            getLog().info(line);
+        }
+        if (matrixFile != null) {
+            StringBuilder content = new StringBuilder();
+            for (String line : lines) {
+                content.append(line).append('\n');
+            }
+            try {
+                matrixFile.getParentFile().mkdirs();
+                FileUtils.fileWrite(matrixFile, "UTF-8", content.toString());
+            } catch (IOException e) {
+                throw new MojoExecutionException("Error writing '" + matrixFile + "': " + e.getMessage(), e);
+            }
+        }
+
+        if (failOnError && !incompatible.isEmpty()) {
+            LogDiffListener log = new LogDiffListener(getLog());
+            for (Row row : rows) {
+                if (row.listener.getSeverityCount(Severity.ERROR) > 0) {
+                    getLog().error("Against " + row.version + ":");
+                    DifferenceStore.Cursor differences = row.listener.openDifferences(Severity.ERROR);
+                    try {
+                        while (differences.hasNext()) {
+                            log.reportDiff(differences.next());
+                        }
+                    } finally {
+                        differences.close();
+                    }
+                }
+            }
+            throw new MojoFailureException("There were errors against " + incompatible.size() + " of " + rows.size()
+                    + " versions: " + incompatible);
+        }
+    }
+
+    private static String pad(String value, int width) {
+        StringBuilder padded = new StringBuilder(value);
+        while (padded.length() < width) {
+            padded.append(' ');
+        }
+        return padded.toString();
+    }
+
+    private static final class Row {
+        private final String version;
+
+        private final ClirrDiffListener listener;
+
+        private final int failures;
+
+        Row(String version, ClirrDiffListener listener, int failures) {
+            this.version = version;
+            this.listener = listener;
+            this.failures = failures;
+        }
+    }
+}
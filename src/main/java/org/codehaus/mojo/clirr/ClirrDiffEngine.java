@@ -0,0 +1,58 @@
+package org.codehaus.mojo.clirr;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.clirr.core.ScopeSelector;
+import net.sf.clirr.core.internal.ApiDiffDispatcher;
+import net.sf.clirr.core.internal.ClassChangeCheck;
+import net.sf.clirr.core.internal.checks.ClassHierarchyCheck;
+import net.sf.clirr.core.internal.checks.ClassModifierCheck;
+import net.sf.clirr.core.internal.checks.ClassScopeCheck;
+import net.sf.clirr.core.internal.checks.FieldSetCheck;
+import net.sf.clirr.core.internal.checks.GenderChangeCheck;
+import net.sf.clirr.core.internal.checks.InterfaceSetCheck;
+import net.sf.clirr.core.internal.checks.MethodSetCheck;
+
+/**
+ * The checks of {@link net.sf.clirr.core.Checker}, as they are.
+ *
+ * @since 2.9
+ */
+public class ClirrDiffEngine implements DiffEngine {
+    public static final String NAME = "clirr";
+
+    public List<ClassChangeCheck> createClassChecks(ApiDiffDispatcher dispatcher, ScopeSelector scopeSelector) {
+        List<ClassChangeCheck> classChecks = createTypeChecks(dispatcher, scopeSelector);
+        classChecks.add(new FieldSetCheck(dispatcher, scopeSelector));
+        classChecks.add(new MethodSetCheck(dispatcher, scopeSelector));
+        return classChecks;
+    }
+
+    /**
+     * @return the checks which compare the classes themselves rather than their members
+     */
+    protected List<ClassChangeCheck> createTypeChecks(ApiDiffDispatcher dispatcher, ScopeSelector scopeSelector) {
+        List<ClassChangeCheck> classChecks = new ArrayList<ClassChangeCheck>();
+        classChecks.add(new ClassScopeCheck(dispatcher, scopeSelector));
+        classChecks.add(new GenderChangeCheck(dispatcher));
+        classChecks.add(new ClassModifierCheck(dispatcher));
+        classChecks.add(new InterfaceSetCheck(dispatcher));
+        classChecks.add(new ClassHierarchyCheck(dispatcher));
+        return classChecks;
+    }
+}
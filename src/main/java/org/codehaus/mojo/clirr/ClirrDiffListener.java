@@ -16,12 +16,15 @@ package org.codehaus.mojo.clirr;
  * limitations under the License.
  */
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 import net.sf.clirr.core.ApiDifference;
 import net.sf.clirr.core.DiffListenerAdapter;
@@ -29,74 +32,205 @@ import net.sf.clirr.core.Severity;
 
 /**
  * Listen to the Clirr events.
+ * <p>
+ * The differences are kept in a {@link DifferenceStore}, in the order of the reports, highest severity first, as
+ * they occur. In the counts-only mode, which suits executions that only check the numbers of differences, no
+ * difference is kept at all.
  *
  * @author <a href="mailto:brett@apache.org">Brett Porter</a>
  */
 public class ClirrDiffListener extends DiffListenerAdapter implements MojoDiffListener {
     /**
-     * The list of differences that occurred.
+     * Whether only the numbers of differences are kept.
      */
-    private List<ApiDifference> apiDifferences = new LinkedList<ApiDifference>();
+    private final boolean countsOnly;
+
+    /**
+     * The differences that occurred.
+     */
+    private final DifferenceStore differences = new DifferenceStore();
+
     /**
      * The list of ignored differences that occurred.
      */
     private Map<Difference, List<ApiDifference>> ignoredApiDifferences = new HashMap<Difference, List<ApiDifference>>();
 
     /**
-     * The number messages for each severity.
+     * The number of messages for each severity, by the index of the severity in
+     * {@link DifferenceStore#SEVERITIES}.
      */
-    private Map<Severity, Integer> counts = new HashMap<Severity, Integer>(3);
+    private final int[] counts = new int[DifferenceStore.SEVERITIES.length];
+
+    /**
+     * The names of the classes which had errors.
+     */
+    private final Set<String> errorClassNames = new TreeSet<String>();
+
+    public ClirrDiffListener() {
+        this(false);
+    }
+
+    /**
+     * @param countsOnly whether to only count the differences, without keeping them
+     * @since 2.9
+     */
+    public ClirrDiffListener(boolean countsOnly) {
+        this.countsOnly = countsOnly;
+    }
 
     @Override
     public void reportDiff(ApiDifference apiDifference) {
-        incrementCount(apiDifference.getMaximumSeverity(), counts);
+        Severity severity = apiDifference.getMaximumSeverity();
+        if (severity != null) {
+            counts[DifferenceStore.indexOf(severity)]++;
+        }
+        if (Severity.ERROR.equals(severity)) {
+            errorClassNames.add(apiDifference.getAffectedClass());
+        }
 
-        apiDifferences.add(apiDifference);
+        if (!countsOnly) {
+            differences.add(apiDifference);
+        }
     }
 
     public void reportIgnoredDiff(ApiDifference ignoredDiff, Difference reason) {
+        if (countsOnly) {
+            return;
+        }
         List<ApiDifference> diffs = ignoredApiDifferences.get(reason);
         if (diffs == null) {
-            diffs = new LinkedList<ApiDifference>();
+            diffs = new ArrayList<ApiDifference>();
             ignoredApiDifferences.put(reason, diffs);
         }
         diffs.add(ignoredDiff);
     }
 
-    @Override
-    public void stop() {
-        Collections.sort(apiDifferences, new Comparator<ApiDifference>() {
-            public int compare(ApiDifference d1, ApiDifference d2) {
-                // compare maximum severities - order highest to lowest.
-                return d2.getMaximumSeverity().compareTo(d1.getMaximumSeverity());
-            }
-        });
+    /**
+     * Moves the differences to files once there are a number of them in memory.
+     *
+     * @param directory   the directory to create the files in
+     * @param maxInMemory the number of differences to keep in memory at most, or 0, for no limit
+     * @since 2.9
+     */
+    public void setSpillThreshold(File directory, int maxInMemory) {
+        differences.setSpillThreshold(directory, maxInMemory);
     }
 
-    private void incrementCount(Severity sev, Map<Severity, Integer> counts) {
-        if (sev != null) {
-            int count = getCount(counts, sev);
-            counts.put(sev, count + 1);
-        }
+    /**
+     * Moves the differences which have occurred so far to files, to free the memory they take. They are read
+     * back when the differences are asked for.
+     *
+     * @param directory the directory to create the files in
+     * @return the number of differences which have been moved
+     */
+    public int spill(File directory) throws IOException {
+        return differences.spill(directory);
     }
 
-    private int getCount(Map<Severity, Integer> counts, Severity sev) {
-        Integer count = counts.get(sev);
-        if (count == null) {
-            count = 0;
-        }
-        return count.intValue();
+    /**
+     * Deletes the files the differences have been moved to, and lets go of the differences, once they have been
+     * used. The numbers of differences and the names of the classes with errors are kept.
+     *
+     * @since 2.9
+     */
+    public void close() {
+        differences.close();
+        ignoredApiDifferences.clear();
+    }
+
+    /**
+     * @return whether only the numbers of differences are kept
+     * @since 2.9
+     */
+    public boolean isCountsOnly() {
+        return countsOnly;
     }
 
+    /**
+     * Reads all differences into memory, see {@link #openDifferences(Severity)} to read them one at a time.
+     *
+     * @return all differences, highest severity first
+     * @throws IllegalStateException in the counts-only mode
+     */
     public List<ApiDifference> getApiDifferences() {
-        return Collections.unmodifiableList(apiDifferences);
+        return getApiDifferences(null);
+    }
+
+    /**
+     * Reads the differences of a severity into memory.
+     *
+     * @param severity the severity, or null, for all differences
+     * @return the differences, in the order they occurred in
+     * @throws IllegalStateException in the counts-only mode
+     * @since 2.9
+     */
+    public List<ApiDifference> getApiDifferences(Severity severity) {
+        DifferenceStore.Cursor cursor = openDifferences(severity);
+        List<ApiDifference> list =
+                new ArrayList<ApiDifference>(severity == null ? differences.size() : getSeverityCount(severity));
+        try {
+            while (cursor.hasNext()) {
+                list.add(cursor.next());
+            }
+        } finally {
+            cursor.close();
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Reads the differences of a severity, or all differences, highest severity first, one at a time.
+     *
+     * @param severity the severity, or null, for all differences
+     * @return the differences, in the order they occurred in, to be closed after reading
+     * @throws IllegalStateException in the counts-only mode
+     */
+    DifferenceStore.Cursor openDifferences(Severity severity) {
+        checkKept();
+        return differences.bySeverity(severity);
+    }
+
+    /**
+     * Reads the differences ordered by class, then by the method or field, one at a time.
+     *
+     * @return the differences, to be closed after reading
+     * @throws IllegalStateException in the counts-only mode
+     */
+    DifferenceStore.Cursor openDifferencesByClass() {
+        checkKept();
+        return differences.byClass();
+    }
+
+    /**
+     * @return the number of differences which have been kept
+     */
+    int getDifferenceCount() {
+        return differences.size();
     }
 
+    /**
+     * @throws IllegalStateException in the counts-only mode
+     */
     public Map<Difference, List<ApiDifference>> getIgnoredApiDifferences() {
+        checkKept();
         return Collections.unmodifiableMap(ignoredApiDifferences);
     }
 
+    /**
+     * @return the names of the classes which had errors, sorted, also in the counts-only mode
+     * @since 2.9
+     */
+    public Set<String> getErrorClassNames() {
+        return Collections.unmodifiableSet(errorClassNames);
+    }
+
     public int getSeverityCount(Severity severity) {
-        return getCount(counts, severity);
+        return severity == null ? 0 : counts[DifferenceStore.indexOf(severity)];
+    }
+
+    private void checkKept() {
+        if (countsOnly) {
+            throw new IllegalStateException("Only the numbers of differences have been kept");
+        }
     }
 }
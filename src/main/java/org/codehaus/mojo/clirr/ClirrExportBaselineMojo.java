@@ -0,0 +1,104 @@
+package org.codehaus.mojo.clirr;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.resolver.ArtifactNotFoundException;
+import org.apache.maven.artifact.resolver.ArtifactResolutionException;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.project.ProjectBuildingException;
+import org.apache.maven.project.artifact.InvalidDependencyVersionException;
+
+/**
+ * Export the previous version and all of its dependencies into a single, checksummed baseline bundle.
+ * Other executions can use the bundle through the <code>baselineBundle</code> parameter to compare
+ * against the previous version without resolving anything from a repository.
+ *
+ * @goal export-baseline
+ * @since 2.9
+ */
+public class ClirrExportBaselineMojo extends AbstractClirrMojo {
+    /**
+     * The bundle file to write.
+     *
+     * @parameter property="clirr.bundleFile" default-value="${project.build.directory}/clirr-baseline.zip"
+     * @required
+     */
+    private File bundleFile;
+
+    protected void doExecute() throws MojoExecutionException, MojoFailureException {
+        if (baselineBundle != null) {
+            throw new MojoFailureException("Cannot export a baseline bundle from another baseline bundle");
+        }
+
+        Set previousArtifacts = getPreviousArtifacts();
+        List<Artifact> baseline = new ArrayList<Artifact>();
+        for (Iterator iter = previousArtifacts.iterator(); iter.hasNext(); ) {
+            Artifact artifact = (Artifact) iter.next();
+            if (artifact.getVersion() == null) {
+                getLog().info("No previous version was found. Use 'comparisonArtifacts'"
+                        + " for explicit configuration if you think this is wrong.");
+                return;
+            }
+            baseline.add(artifact);
+        }
+
+        final List dependencies;
+        try {
+            resolvePreviousArtifacts(previousArtifacts);
+            dependencies = getTransitiveDependencies(previousArtifacts);
+        } catch (ProjectBuildingException e) {
+            throw new MojoExecutionException("Failed to build project for previous artifact: " + e.getMessage(), e);
+        } catch (InvalidDependencyVersionException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        } catch (ArtifactResolutionException e) {
+            throw new MojoExecutionException("Error resolving previous version: " + e.getMessage(), e);
+        } catch (ArtifactNotFoundException e) {
+            throw new MojoExecutionException("Error finding previous version: " + e.getMessage(), e);
+        }
+
+        List<Artifact> bundled = new ArrayList<Artifact>();
+        for (Artifact artifact : baseline) {
+            if (isInspectable(artifact)) {
+                bundled.add(artifact);
+            }
+        }
+
+        List<Artifact> bundledDependencies = new ArrayList<Artifact>();
+        for (Iterator iter = dependencies.iterator(); iter.hasNext(); ) {
+            Artifact artifact = (Artifact) iter.next();
+            if (!previousArtifacts.contains(artifact)) {
+                bundledDependencies.add(artifact);
+            }
+        }
+
+        try {
+            BaselineBundle.write(bundleFile, bundled, bundledDependencies);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error writing baseline bundle " + bundleFile + ": " + e.getMessage(), e);
+        }
+
+        getLog().info("Exported version " + baseline.get(0).getVersion() + " with " + bundledDependencies.size()
+                + " dependencies to " + bundleFile);
+    }
+}
@@ -188,7 +188,11 @@ public class ClirrReport extends AbstractClirrMojo implements MavenReport {
         if (!canGenerateReport()) {
             getLog().info("Not generating report as there are no sources to compare");
         } else {
-            doReport(sink, locale);
+            try {
+                doReport(sink, locale);
+            } finally {
+                disposeResults();
+            }
         }
     }
 
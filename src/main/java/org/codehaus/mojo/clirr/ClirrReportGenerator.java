@@ -295,20 +295,23 @@ public class ClirrReportGenerator {
         sink.text(bundle.getString("report.clirr.api.incompatibilities"));
         sink.sectionTitle1_();
 
-        List<ApiDifference> differences = listener.getApiDifferences();
-
-        if (!differences.isEmpty()) {
-            doIncompatibilitiesTable(differences);
-        } else {
-            sink.paragraph();
-            sink.text(bundle.getString("report.clirr.noresults"));
-            sink.paragraph_();
+        DifferenceStore.Cursor differences = listener.openDifferences(null);
+        try {
+            if (differences.hasNext()) {
+                doIncompatibilitiesTable(differences);
+            } else {
+                sink.paragraph();
+                sink.text(bundle.getString("report.clirr.noresults"));
+                sink.paragraph_();
+            }
+        } finally {
+            differences.close();
         }
 
         sink.section1_();
     }
 
-    private void doIncompatibilitiesTable(List<ApiDifference> differences) {
+    private void doIncompatibilitiesTable(Iterator<ApiDifference> differences) {
         sink.table();
         sink.tableRow();
         sink.tableHeaderCell();
@@ -328,7 +331,8 @@ public class ClirrReportGenerator {
         MessageTranslator translator = new MessageTranslator();
         translator.setLocale(locale);
 
-        for (ApiDifference difference : differences) {
+        while (differences.hasNext()) {
+            ApiDifference difference = differences.next();
             // TODO: differentiate source and binary? The only difference seems to be MSG_CONSTANT_REMOVED at this point
             Severity maximumSeverity = difference.getMaximumSeverity();
 
@@ -396,12 +400,16 @@ public class ClirrReportGenerator {
             sink.text(bundle.getString("report.clirr.noresults"));
             sink.paragraph_();
         } else {
-            doApiChangesTable(apiChangeReport);
+            doApiChangesTable(apiChangeReport, listener);
         }
 
         sink.section1_();
     }
 
+    /**
+     * Groups the ignored differences by their justification. The reported differences, which are all unjustified,
+     * are only read when their group is rendered, see {@link #doApiChangesTable(Map, ClirrDiffListener)}.
+     */
     private Map<Difference, List<ApiChange>> getApiChangeReport(ClirrDiffListener listener) {
         final Map<String, List<ApiChange>> tmp = new HashMap<String, List<ApiChange>>();
         for (Entry<Difference, List<ApiDifference>> ignoredDiff :
@@ -410,12 +418,12 @@ public class ClirrReportGenerator {
                 putApiChange(tmp, apiDiff, ignoredDiff.getKey());
             }
         }
-        for (ApiDifference apiDiff : listener.getApiDifferences()) {
-            putApiChange(tmp, apiDiff, null);
-        }
 
         final Map<Difference, List<ApiChange>> results =
                 new TreeMap<Difference, List<ApiChange>>(new JustificationComparator());
+        if (listener.getDifferenceCount() > 0) {
+            results.put(createNullObject(), new LinkedList<ApiChange>());
+        }
 
         for (List<ApiChange> changes : tmp.values()) {
             for (ApiChange apiChange : changes) {
@@ -484,7 +492,8 @@ public class ClirrReportGenerator {
         return null;
     }
 
-    private void doApiChangesTable(Map<Difference, List<ApiChange>> apiChangeReport) {
+    private void doApiChangesTable(Map<Difference, List<ApiChange>> apiChangeReport, ClirrDiffListener listener) {
+        String unjustified = bundle.getString("report.clirr.api.changes.unjustified");
         if (comparisonVersion != null) {
             String[] args = new String[] {comparisonVersion, currentVersion};
             String message =
@@ -518,18 +527,12 @@ public class ClirrReportGenerator {
             }
             Collections.sort(apiChanges.getValue(), new ApiChangeComparator());
 
-            for (ApiChange apiChange : apiChanges.getValue()) {
-                sink.tableRow();
-                sink.tableCell();
-                sink.text(apiChange.getAffectedClass());
-                sink.tableCell_();
-                sink.tableCell();
-                sink.text(apiChange.getFrom());
-                sink.tableCell_();
-                sink.tableCell();
-                sink.text(apiChange.getTo());
-                sink.tableCell_();
-                sink.tableRow_();
+            if (unjustified.equals(apiChanges.getKey().getJustification()) && listener.getDifferenceCount() > 0) {
+                doApiChangeRows(apiChanges.getValue(), listener);
+            } else {
+                for (ApiChange apiChange : apiChanges.getValue()) {
+                    doApiChangeRow(apiChange);
+                }
             }
             sink.table_();
             sink.paragraph_();
@@ -538,6 +541,58 @@ public class ClirrReportGenerator {
         sink.list_();
     }
 
+    /**
+     * Renders the unjustified ignored differences together with the reported differences, which are read ordered
+     * by class one at a time.
+     */
+    private void doApiChangeRows(List<ApiChange> ignoredChanges, ClirrDiffListener listener) {
+        Comparator<ApiChange> comparator = new ApiChangeComparator();
+        Difference nullObject = createNullObject();
+        Iterator<ApiChange> ignored = ignoredChanges.iterator();
+        ApiChange nextIgnored = ignored.hasNext() ? ignored.next() : null;
+        DifferenceStore.Cursor differences = listener.openDifferencesByClass();
+        try {
+            ApiChange nextReported = nextApiChange(differences, nullObject);
+            while (nextIgnored != null || nextReported != null) {
+                if (nextReported == null
+                        || (nextIgnored != null && comparator.compare(nextIgnored, nextReported) <= 0)) {
+                    doApiChangeRow(nextIgnored);
+                    nextIgnored = ignored.hasNext() ? ignored.next() : null;
+                } else {
+                    doApiChangeRow(nextReported);
+                    nextReported = nextApiChange(differences, nullObject);
+                }
+            }
+        } finally {
+            differences.close();
+        }
+    }
+
+    private ApiChange nextApiChange(Iterator<ApiDifference> differences, Difference nullObject) {
+        if (!differences.hasNext()) {
+            return null;
+        }
+        ApiChange change = new ApiChange();
+        change.difference = nullObject;
+        change.apiDifferences.add(differences.next());
+        change.computeFields();
+        return change;
+    }
+
+    private void doApiChangeRow(ApiChange apiChange) {
+        sink.tableRow();
+        sink.tableCell();
+        sink.text(apiChange.getAffectedClass());
+        sink.tableCell_();
+        sink.tableCell();
+        sink.text(apiChange.getFrom());
+        sink.tableCell_();
+        sink.tableCell();
+        sink.text(apiChange.getTo());
+        sink.tableCell_();
+        sink.tableRow_();
+    }
+
     public void setEnableSeveritySummary(boolean enableSeveritySummary) {
         this.enableSeveritySummary = enableSeveritySummary;
     }
@@ -0,0 +1,121 @@
+package org.codehaus.mojo.clirr;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.bcel.classfile.ClassParser;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.util.ClassPath;
+import org.apache.bcel.util.Repository;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * A BCEL {@link Repository} which loads classes through a {@link ClassLoader}, like BCEL's own
+ * <code>ClassLoaderRepository</code>, but which can be used by several threads at once. Lookups of
+ * classes that are already known do not lock.
+ *
+ * @since 2.9
+ */
+class ConcurrentClassRepository implements Repository {
+    private final ClassLoader loader;
+
+    private final ConcurrentMap<String, JavaClass> classes = new ConcurrentHashMap<String, JavaClass>();
+
+    /**
+     * Classes which have been read already, but which are only known once they are loaded, as if the class loader
+     * had read them.
+     */
+    private final ConcurrentMap<String, JavaClass> loadable = new ConcurrentHashMap<String, JavaClass>();
+
+    ConcurrentClassRepository(ClassLoader loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * Keeps a class to be handed out by {@link #loadClass(String)} instead of reading it through the class loader.
+     */
+    void addLoadable(JavaClass clazz) {
+        loadable.put(clazz.getClassName(), clazz);
+    }
+
+    public void storeClass(JavaClass clazz) {
+        classes.put(clazz.getClassName(), clazz);
+        clazz.setRepository(this);
+    }
+
+    public void removeClass(JavaClass clazz) {
+        classes.remove(clazz.getClassName());
+    }
+
+    public JavaClass findClass(String className) {
+        return classes.get(className);
+    }
+
+    public JavaClass loadClass(String className) throws ClassNotFoundException {
+        if (className == null || className.length() == 0) {
+            throw new IllegalArgumentException("Invalid class name " + className);
+        }
+        className = className.replace('/', '.');
+
+        JavaClass clazz = classes.get(className);
+        if (clazz != null) {
+            return clazz;
+        }
+
+        clazz = loadable.get(className);
+        if (clazz == null) {
+            String file = className.replace('.', '/') + ".class";
+            InputStream in = loader.getResourceAsStream(file);
+            if (in == null) {
+                throw new ClassNotFoundException(className + " not found.");
+            }
+            try {
+                clazz = new ClassParser(in, file).parse();
+            } catch (IOException e) {
+                throw new ClassNotFoundException(e.toString(), e);
+            } finally {
+                IOUtil.close(in);
+            }
+        }
+        clazz.setRepository(this);
+
+        JavaClass existing = classes.putIfAbsent(className, clazz);
+        return existing != null ? existing : clazz;
+    }
+
+    public JavaClass loadClass(Class<?> clazz) throws ClassNotFoundException {
+        return loadClass(clazz.getName());
+    }
+
+    public ClassPath getClassPath() {
+        return null;
+    }
+
+    public void clear() {
+        classes.clear();
+        loadable.clear();
+    }
+
+    /**
+     * @return the number of classes which are known
+     */
+    public int size() {
+        return classes.size();
+    }
+}
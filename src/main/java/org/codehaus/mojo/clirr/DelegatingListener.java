@@ -16,15 +16,18 @@ package org.codehaus.mojo.clirr;
  * limitations under the License.
  */
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 import net.sf.clirr.core.ApiDifference;
 import net.sf.clirr.core.DiffListener;
 import net.sf.clirr.core.Severity;
+import org.apache.maven.plugin.logging.Log;
 
 /**
  * Delegates to a number of listeners, filtering by severity.
@@ -32,25 +35,94 @@ import net.sf.clirr.core.Severity;
  * @author <a href="mailto:brett@apache.org">Brett Porter</a>
  */
 public class DelegatingListener implements MojoDiffListener {
-    private final List<DiffListener> listeners;
+    private List<DiffListener> listeners;
 
     private final Severity minSeverity;
 
     private final List<Difference> ignored;
 
-    private Map<Difference, Map<Object, List<ApiDifference>>> deferredMatchesPerDifference =
-            new HashMap<Difference, Map<Object, List<ApiDifference>>>();
+    private final IgnoreRuleIndex ignoredIndex;
+
+    /**
+     * The differences whose match is deferred until all differences of their method are known, by the index of the
+     * ignored difference, which are those of {@link #deferredClass}, as the differences of a class are reported
+     * together.
+     */
+    private Map<Integer, Map<Object, List<ApiDifference>>> deferredMatchesPerDifference =
+            new LinkedHashMap<Integer, Map<Object, List<ApiDifference>>>();
+
+    private String deferredClass;
+
+    private IgnoreRuleStatistics statistics;
+
+    private File statisticsFile;
+
+    private Log log;
 
     public DelegatingListener(List<DiffListener> listeners, Severity minSeverity, List<Difference> ignored) {
         this.listeners = listeners == null ? Collections.<DiffListener>emptyList() : listeners;
 
         this.minSeverity = minSeverity;
 
-        this.ignored = ignored == null ? Collections.<Difference>emptyList() : ignored;
+        this.ignored = ignored == null ? Collections.<Difference>emptyList() : new ArrayList<Difference>(ignored);
+        for (Difference difference : this.ignored) {
+            if (difference != null) {
+                difference.compile();
+            }
+        }
+
+        this.ignoredIndex = new IgnoreRuleIndex(this.ignored);
+    }
+
+    /**
+     * Counts how often each ignored difference is matched against reported differences and how often it matches,
+     * and writes the counts to a file when this listener stops.
+     *
+     * @param statisticsFile the file to write the counts to, or null, to not count
+     * @param log            where to warn if the file cannot be written, which does not fail the comparison
+     * @see IgnoreRuleStatistics
+     */
+    public void setStatisticsFile(File statisticsFile, Log log) {
+        this.statisticsFile = statisticsFile;
+        this.statistics = statisticsFile == null ? null : new IgnoreRuleStatistics(ignored);
+        this.log = log;
+    }
+
+    /**
+     * Hands the differences to each listener which writes them out, rather than collecting them for the mojo, on
+     * a thread of its own, through a queue of the given size, see {@link AsyncDiffListener}. The listeners which
+     * collect the differences, such as the one whose error count stops the comparison, are still called on the
+     * comparing thread. {@link #stop()} returns once all listeners have got all differences. To be called before
+     * {@link #start()}.
+     *
+     * @param queueSize the number of differences which may wait for each listener, or 0, to call all listeners on
+     *                  the comparing thread
+     */
+    public void setQueueSize(int queueSize) {
+        if (queueSize <= 0) {
+            return;
+        }
+        List<DiffListener> wrapped = new ArrayList<DiffListener>(listeners.size());
+        for (DiffListener listener : listeners) {
+            if (listener instanceof MojoDiffListener || listener instanceof AsyncDiffListener) {
+                wrapped.add(listener);
+            } else {
+                wrapped.add(new AsyncDiffListener(listener, queueSize));
+            }
+        }
+        listeners = wrapped;
+    }
+
+    /**
+     * @return the counts of the ignored differences, or null, if they are not counted
+     */
+    public IgnoreRuleStatistics getStatistics() {
+        return statistics;
     }
 
     public void start() {
         deferredMatchesPerDifference.clear();
+        deferredClass = null;
 
         for (DiffListener listener : listeners) {
             listener.start();
@@ -58,8 +130,14 @@ public class DelegatingListener implements MojoDiffListener {
     }
 
     public void reportDiff(ApiDifference apiDifference) {
+        if (!apiDifference.getAffectedClass().equals(deferredClass)) {
+            // the checker has moved on to another class, so the deferred matches have all their differences
+            resolveDeferredMatches();
+            deferredClass = apiDifference.getAffectedClass();
+        }
+
         if ((minSeverity == null || minSeverity.compareTo(apiDifference.getMaximumSeverity()) <= 0)) {
-            Difference reasonToIgnoreDiff = getReasonToIgnoreDiff(apiDifference);
+            Difference reasonToIgnoreDiff = getReasonToIgnoreDiff(ApiDifferenceView.of(apiDifference));
             if (reasonToIgnoreDiff == null) {
                 reportDiff_(apiDifference);
             } else {
@@ -84,14 +162,55 @@ public class DelegatingListener implements MojoDiffListener {
     }
 
     public void stop() {
-        // process the deferred matches now
-        for (Map.Entry<Difference, Map<Object, List<ApiDifference>>> perDifferenceEntry :
+        // process the deferred matches of the last class now
+        resolveDeferredMatches();
+
+        if (statistics != null) {
+            try {
+                statistics.write(statisticsFile);
+            } catch (IOException e) {
+                log.warn("Unable to write the statistics of the ignored differences to " + statisticsFile + ": "
+                        + e.getMessage());
+            }
+        }
+
+        // and stop the underlying listeners, all of them even if one fails, so that every output is closed
+        Throwable failure = null;
+        try {
+            for (DiffListener listener : listeners) {
+                try {
+                    listener.stop();
+                } catch (RuntimeException e) {
+                    failure = failure == null ? e : failure;
+                } catch (Error e) {
+                    failure = failure == null ? e : failure;
+                }
+            }
+        } finally {
+            // the comparing thread may be a pooled one, which would otherwise hold on to the last difference
+            ApiDifferenceView.clear();
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure != null) {
+            throw (RuntimeException) failure;
+        }
+    }
+
+    private void resolveDeferredMatches() {
+        for (Map.Entry<Integer, Map<Object, List<ApiDifference>>> perDifferenceEntry :
                 deferredMatchesPerDifference.entrySet()) {
-            Difference diff = perDifferenceEntry.getKey();
+            int index = perDifferenceEntry.getKey();
+            Difference diff = ignored.get(index);
             Map<Object, List<ApiDifference>> diffsPerId = perDifferenceEntry.getValue();
 
             for (List<ApiDifference> apiDiffs : diffsPerId.values()) {
-                if (!diff.resolveDefferedMatches(apiDiffs)) {
+                long start = statistics == null ? 0 : System.nanoTime();
+                boolean resolved = diff.resolveDefferedMatches(apiDiffs);
+                if (statistics != null) {
+                    statistics.resolved(index, resolved, System.nanoTime() - start);
+                }
+                if (!resolved) {
                     for (ApiDifference apiDiff : apiDiffs) {
                         reportDiff_(apiDiff);
                     }
@@ -102,14 +221,10 @@ public class DelegatingListener implements MojoDiffListener {
                 }
             }
         }
-
-        // and stop the underlying listeners
-        for (DiffListener listener : listeners) {
-            listener.stop();
-        }
+        deferredMatchesPerDifference.clear();
     }
 
-    private Difference getReasonToIgnoreDiff(ApiDifference apiDiff) {
+    private Difference getReasonToIgnoreDiff(ApiDifferenceView view) {
         if (ignored == null) {
             return null;
         }
@@ -118,11 +233,17 @@ public class DelegatingListener implements MojoDiffListener {
         boolean matched = false;
 
         Difference reason = null;
-        for (Difference difference : ignored) {
+        int[] candidates = ignoredIndex.getCandidates(view);
+        for (int i = 0; i < candidates.length; i++) {
+            Difference difference = ignored.get(candidates[i]);
             if (difference == null) {
                 continue;
             }
-            Difference.Result res = difference.matches(apiDiff);
+            long start = statistics == null ? 0 : System.nanoTime();
+            Difference.Result res = difference.matches(view);
+            if (statistics != null) {
+                statistics.evaluated(candidates[i], res, System.nanoTime() - start);
+            }
 
             switch (res.getCode()) {
                 case Difference.Result.MATCHED:
@@ -135,10 +256,10 @@ public class DelegatingListener implements MojoDiffListener {
                     break;
                 case Difference.Result.DEFERRED_MATCH:
                     Map<Object, List<ApiDifference>> diffsPerDifferentiator =
-                            deferredMatchesPerDifference.get(difference);
+                            deferredMatchesPerDifference.get(candidates[i]);
                     if (diffsPerDifferentiator == null) {
-                        diffsPerDifferentiator = new HashMap<Object, List<ApiDifference>>();
-                        deferredMatchesPerDifference.put(difference, diffsPerDifferentiator);
+                        diffsPerDifferentiator = new LinkedHashMap<Object, List<ApiDifference>>();
+                        deferredMatchesPerDifference.put(candidates[i], diffsPerDifferentiator);
                     }
 
                     List<ApiDifference> diffs = diffsPerDifferentiator.get(res.getDifferentiator());
@@ -147,7 +268,7 @@ public class DelegatingListener implements MojoDiffListener {
                         diffsPerDifferentiator.put(res.getDifferentiator(), diffs);
                     }
 
-                    diffs.add(apiDiff);
+                    diffs.add(view.getDifference());
                     if (reason == null) {
                         reason = difference;
                     }
@@ -0,0 +1,40 @@
+package org.codehaus.mojo.clirr;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.List;
+
+import net.sf.clirr.core.ScopeSelector;
+import net.sf.clirr.core.internal.ApiDiffDispatcher;
+import net.sf.clirr.core.internal.ClassChangeCheck;
+
+/**
+ * Compares the classes which exist in both versions. The pairing of the classes, the reporting of added and
+ * removed classes, the isolation of failures and the threading are left to {@link ApiChecker}; an engine only
+ * decides how a pair of classes is compared, and has to report the same differences as Clirr does.
+ *
+ * @since 2.9
+ */
+public interface DiffEngine {
+    /**
+     * Creates the checks to run on each pair of classes, in order, until one of them returns false. This is
+     * called once for each thread of the comparison, so the checks are never used concurrently.
+     *
+     * @param dispatcher    the dispatcher to report the differences to
+     * @param scopeSelector the selector of the classes and members to check
+     * @return the checks, as a list of {@link ClassChangeCheck}
+     */
+    List<ClassChangeCheck> createClassChecks(ApiDiffDispatcher dispatcher, ScopeSelector scopeSelector);
+}
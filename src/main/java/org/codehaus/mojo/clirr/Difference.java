@@ -22,8 +22,6 @@ import java.util.ArrayList;
 import java.util.List;
 
 import net.sf.clirr.core.ApiDifference;
-import net.sf.clirr.core.MessageTranslator;
-import org.codehaus.plexus.util.SelectorUtils;
 import org.codehaus.plexus.util.xml.pull.MXParser;
 import org.codehaus.plexus.util.xml.pull.XmlPullParser;
 import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
@@ -43,26 +41,30 @@ public class Difference {
 
         public static final int DEFERRED_MATCH = 2;
 
+        private static final Result NOT_MATCHED_RESULT = new Result(NOT_MATCHED, null);
+
+        private static final Result MATCHED_RESULT = new Result(MATCHED, null);
+
         public Result(int code, Object differentiator) {
             this.code = code;
             this.differentiator = differentiator;
         }
 
         public static Result notMatched() {
-            return new Result(NOT_MATCHED, null);
+            return NOT_MATCHED_RESULT;
         }
 
         public static Result matched() {
-            return new Result(MATCHED, null);
+            return MATCHED_RESULT;
         }
 
         public static Result deferred(Object differentiator) {
             return new Result(DEFERRED_MATCH, differentiator);
         }
 
-        private int code;
+        private final int code;
 
-        private Object differentiator;
+        private final Object differentiator;
 
         public int getCode() {
             return code;
@@ -73,12 +75,6 @@ public class Difference {
         }
     }
 
-    private static final MessageTranslator ARGS_EXTRACTOR = new MessageTranslator();
-
-    static {
-        ARGS_EXTRACTOR.setResourceName(Difference.class.getName());
-    }
-
     public static Difference[] parseXml(Reader xml) throws XmlPullParserException, IOException {
         XmlPullParser parser = new MXParser();
         parser.setInput(xml);
@@ -246,12 +242,34 @@ public class Difference {
      */
     private String justification;
 
+    private volatile boolean compiled;
+
+    private GlobMatcher classNameMatcher;
+
+    private GlobMatcher fieldMatcher;
+
+    private GlobMatcher methodMatcher;
+
+    private GlobMatcher fromMatcher;
+
+    private GlobMatcher toMatcher;
+
+    private int fromVersion;
+
+    private int toVersion;
+
+    /**
+     * Why this difference cannot be matched, if parameters of its type are missing or invalid.
+     */
+    private String invalid;
+
     public int getDifferenceType() {
         return differenceType;
     }
 
     public void setDifferenceType(int differenceType) {
         this.differenceType = differenceType;
+        this.compiled = false;
     }
 
     public String getClassName() {
@@ -260,6 +278,7 @@ public class Difference {
 
     public void setClassName(String className) {
         this.className = className;
+        this.compiled = false;
     }
 
     public String getField() {
@@ -268,6 +287,7 @@ public class Difference {
 
     public void setField(String field) {
         this.field = field;
+        this.compiled = false;
     }
 
     public String getMethod() {
@@ -276,6 +296,7 @@ public class Difference {
 
     public void setMethod(String method) {
         this.method = method;
+        this.compiled = false;
     }
 
     public String getFrom() {
@@ -284,6 +305,7 @@ public class Difference {
 
     public void setFrom(String from) {
         this.from = from;
+        this.compiled = false;
     }
 
     public String getTo() {
@@ -292,6 +314,7 @@ public class Difference {
 
     public void setTo(String to) {
         this.to = to;
+        this.compiled = false;
     }
 
     public String getJustification() {
@@ -302,13 +325,40 @@ public class Difference {
         this.justification = justification;
     }
 
+    /**
+     * Compiles the expressions of this difference and checks the parameters its type requires, so that matching
+     * does neither. Missing or invalid parameters are only reported once a reported difference of the type and
+     * class is matched against this one. This is done by the first match if it has not been done before, and has
+     * to be done again when a parameter changes.
+     */
+    void compile() {
+        if (compiled) {
+            return;
+        }
+        synchronized (this) {
+            if (!compiled) {
+                classNameMatcher = GlobMatcher.compile(className);
+                fieldMatcher = GlobMatcher.compile(field);
+                methodMatcher = GlobMatcher.compile(method);
+                fromMatcher = GlobMatcher.compile(from);
+                toMatcher = GlobMatcher.compile(to);
+                invalid = validate();
+                compiled = true;
+            }
+        }
+    }
+
     public Result matches(ApiDifference apiDiff) {
-        if (apiDiff.getMessage().getId() != differenceType) {
+        return matches(ApiDifferenceView.of(apiDiff));
+    }
+
+    Result matches(ApiDifferenceView view) {
+        if (view.getId() != differenceType) {
             return Result.notMatched();
         }
 
-        String affectedClassPath = apiDiff.getAffectedClass().replace('.', '/');
-        if (!SelectorUtils.matchPath(className, affectedClassPath, "/", true)) {
+        compile();
+        if (!classNameMatcher.matches(view.getClassPath())) {
             return Result.notMatched();
         }
 
@@ -334,83 +384,84 @@ public class Difference {
             case 3005:
                 return Result.matched();
             case 4000:
-                return matches4000(apiDiff) ? Result.matched() : Result.notMatched();
+                return matches4000(view) ? Result.matched() : Result.notMatched();
             case 4001:
-                return matches4001(apiDiff) ? Result.matched() : Result.notMatched();
+                return matches4001(view) ? Result.matched() : Result.notMatched();
             case 5000:
-                return matches5000(apiDiff) ? Result.matched() : Result.notMatched();
+                return matches5000(view) ? Result.matched() : Result.notMatched();
             case 5001:
-                return matches5001(apiDiff) ? Result.matched() : Result.notMatched();
+                return matches5001(view) ? Result.matched() : Result.notMatched();
             case 6000: // added field
-                return matches6000(apiDiff) ? Result.matched() : Result.notMatched();
+                return matches6000(view) ? Result.matched() : Result.notMatched();
             case 6001: // removed field
-                return matches6001(apiDiff) ? Result.matched() : Result.notMatched();
+                return matches6001(view) ? Result.matched() : Result.notMatched();
             case 6002: // field value no longer a compile-time constant
-                return matches6002(apiDiff) ? Result.matched() : Result.notMatched();
+                return matches6002(view) ? Result.matched() : Result.notMatched();
             case 6003: // value of the compile-time constant changed on a field
-                return matches6003(apiDiff) ? Result.matched() : Result.notMatched();
+                return matches6003(view) ? Result.matched() : Result.notMatched();
             case 6004: // field type changed
-                return matches6004(apiDiff) ? Result.matched() : Result.notMatched();
+                return matches6004(view) ? Result.matched() : Result.notMatched();
             case 6005: // field now non-final
-                return matches6005(apiDiff) ? Result.matched() : Result.notMatched();
+                return matches6005(view) ? Result.matched() : Result.notMatched();
             case 6006: // field now final
-                return matches6006(apiDiff) ? Result.matched() : Result.notMatched();
+                return matches6006(view) ? Result.matched() : Result.notMatched();
             case 6007: // field now non-static
-                return matches6007(apiDiff) ? Result.matched() : Result.notMatched();
+                return matches6007(view) ? Result.matched() : Result.notMatched();
             case 6008: // field now static
-                return matches6008(apiDiff) ? Result.matched() : Result.notMatched();
+                return matches6008(view) ? Result.matched() : Result.notMatched();
             case 6009: // field more accessible
-                return matches6009(apiDiff) ? Result.matched() : Result.notMatched();
+                return matches6009(view) ? Result.matched() : Result.notMatched();
             case 6010: // field less accessible
-                return matches6010(apiDiff) ? Result.matched() : Result.notMatched();
+                return matches6010(view) ? Result.matched() : Result.notMatched();
             case 6011: // removed a constant field
-                return matches6011(apiDiff) ? Result.matched() : Result.notMatched();
+                return matches6011(view) ? Result.matched() : Result.notMatched();
             case 7000: // method now in superclass
-                return matches7000(apiDiff) ? Result.matched() : Result.notMatched();
+                return matches7000(view) ? Result.matched() : Result.notMatched();
             case 7001: // method now in interface
-                return matches7001(apiDiff) ? Result.matched() : Result.notMatched();
+                return matches7001(view) ? Result.matched() : Result.notMatched();
             case 7002: // method removed
-                return matches7002(apiDiff) ? Result.matched() : Result.notMatched();
+                return matches7002(view) ? Result.matched() : Result.notMatched();
             case 7003: // Method Overide Removed
-                return matches7003(apiDiff) ? Result.matched() : Result.notMatched();
+                return matches7003(view) ? Result.matched() : Result.notMatched();
             case 7004: // Method Argument Count Changed
-                return matches7004(apiDiff) ? Result.matched() : Result.notMatched();
+                return matches7004(view) ? Result.matched() : Result.notMatched();
             case 7005: // Method Argument Type changed
-                return Result.deferred(getDifferentiatorFor7005(apiDiff));
+                return Result.deferred(getDifferentiatorFor7005(view.getDifference()));
             case 7006: // Method Return Type changed
-                return matches7006(apiDiff) ? Result.matched() : Result.notMatched();
+                return matches7006(view) ? Result.matched() : Result.notMatched();
             case 7007: // Method has been Deprecated
-                return matches7007(apiDiff) ? Result.matched() : Result.notMatched();
+                return matches7007(view) ? Result.matched() : Result.notMatched();
             case 7008: // Method has been Undeprecated
-                return matches7008(apiDiff) ? Result.matched() : Result.notMatched();
+                return matches7008(view) ? Result.matched() : Result.notMatched();
             case 7009: // Method is now Less Accessible
-                return matches7009(apiDiff) ? Result.matched() : Result.notMatched();
+                return matches7009(view) ? Result.matched() : Result.notMatched();
             case 7010: // Method is now More Accessible
-                return matches7010(apiDiff) ? Result.matched() : Result.notMatched();
+                return matches7010(view) ? Result.matched() : Result.notMatched();
             case 7011: // Method Added
-                return matches7011(apiDiff) ? Result.matched() : Result.notMatched();
+                return matches7011(view) ? Result.matched() : Result.notMatched();
             case 7012: // Method Added to Interface
-                return matches7012(apiDiff) ? Result.matched() : Result.notMatched();
+                return matches7012(view) ? Result.matched() : Result.notMatched();
             case 7013: // Abstract Method Added to Class
-                return matches7013(apiDiff) ? Result.matched() : Result.notMatched();
+                return matches7013(view) ? Result.matched() : Result.notMatched();
             case 7014: // Method now final
-                return matches7014(apiDiff) ? Result.matched() : Result.notMatched();
+                return matches7014(view) ? Result.matched() : Result.notMatched();
             case 7015: // Method now non-final
-                return matches7015(apiDiff) ? Result.matched() : Result.notMatched();
+                return matches7015(view) ? Result.matched() : Result.notMatched();
             case 8000: // Class added
                 return Result.matched();
             case 8001: // Class removed
                 return Result.matched();
             case 10000:
-                return matches10000(apiDiff) ? Result.matched() : Result.notMatched();
+                return matches10000(view) ? Result.matched() : Result.notMatched();
             case 10001:
-                return matches10001(apiDiff) ? Result.matched() : Result.notMatched();
+                return matches10001(view) ? Result.matched() : Result.notMatched();
             default:
                 return Result.notMatched();
         }
     }
 
     public boolean resolveDefferedMatches(List<ApiDifference> defferedApiDifferences) {
+        compile();
         if (differenceType == 7005) {
             return matches7005(defferedApiDifferences);
         } else {
@@ -427,194 +478,189 @@ public class Difference {
     /**
      * Added interface to the set of implemented interfaces
      */
-    private boolean matches4000(ApiDifference apiDiff) {
-        throwIfMissing(false, false, false, true);
+    private boolean matches4000(ApiDifferenceView view) {
+        throwIfInvalid();
 
-        String newIface = getArgs(apiDiff)[0];
-        newIface = newIface.replace('.', '/');
+        String newIface = view.getArgument(0);
 
-        return SelectorUtils.matchPath(to, newIface, "/", true);
+        return toMatcher.matchesClassName(newIface);
     }
 
     /**
      * Removed interface from the set of implemented interfaces
      */
-    private boolean matches4001(ApiDifference apiDiff) {
-        throwIfMissing(false, false, false, true);
+    private boolean matches4001(ApiDifferenceView view) {
+        throwIfInvalid();
 
-        String removedIface = getArgs(apiDiff)[0];
-        removedIface = removedIface.replace('.', '/');
+        String removedIface = view.getArgument(0);
 
-        return SelectorUtils.matchPath(to, removedIface, "/", true);
+        return toMatcher.matchesClassName(removedIface);
     }
 
     /**
      * Added class to the set of superclasses
      */
-    private boolean matches5000(ApiDifference apiDiff) {
-        throwIfMissing(false, false, false, true);
+    private boolean matches5000(ApiDifferenceView view) {
+        throwIfInvalid();
 
-        String newSuperclass = getArgs(apiDiff)[0];
-        newSuperclass = newSuperclass.replace('.', '/');
+        String newSuperclass = view.getArgument(0);
 
-        return SelectorUtils.matchPath(to, newSuperclass, "/", true);
+        return toMatcher.matchesClassName(newSuperclass);
     }
 
     /**
      * Removed class from the set of superclasses
      */
-    private boolean matches5001(ApiDifference apiDiff) {
-        throwIfMissing(false, false, false, true);
+    private boolean matches5001(ApiDifferenceView view) {
+        throwIfInvalid();
 
-        String removedSuperclass = getArgs(apiDiff)[0];
-        removedSuperclass = removedSuperclass.replace('.', '/');
+        String removedSuperclass = view.getArgument(0);
 
-        return SelectorUtils.matchPath(to, removedSuperclass, "/", true);
+        return toMatcher.matchesClassName(removedSuperclass);
     }
 
     /**
      * added field
      */
-    private boolean matches6000(ApiDifference apiDiff) {
-        throwIfMissing(true, false, false, false);
-        return SelectorUtils.matchPath(field, apiDiff.getAffectedField());
+    private boolean matches6000(ApiDifferenceView view) {
+        throwIfInvalid();
+        return fieldMatcher.matches(view.getDifference().getAffectedField());
     }
 
     /**
      * removed field
      */
-    private boolean matches6001(ApiDifference apiDiff) {
-        throwIfMissing(true, false, false, false);
-        return SelectorUtils.matchPath(field, apiDiff.getAffectedField());
+    private boolean matches6001(ApiDifferenceView view) {
+        throwIfInvalid();
+        return fieldMatcher.matches(view.getDifference().getAffectedField());
     }
 
     /**
      * field value no longer a compile-time constant
      */
-    private boolean matches6002(ApiDifference apiDiff) {
-        throwIfMissing(true, false, false, false);
-        return SelectorUtils.matchPath(field, apiDiff.getAffectedField());
+    private boolean matches6002(ApiDifferenceView view) {
+        throwIfInvalid();
+        return fieldMatcher.matches(view.getDifference().getAffectedField());
     }
 
     /**
      * value of the compile-time constant changed on a field
      */
-    private boolean matches6003(ApiDifference apiDiff) {
-        throwIfMissing(true, false, false, false);
-        return SelectorUtils.matchPath(field, apiDiff.getAffectedField());
+    private boolean matches6003(ApiDifferenceView view) {
+        throwIfInvalid();
+        return fieldMatcher.matches(view.getDifference().getAffectedField());
     }
 
     /**
      * field type changed
      */
-    private boolean matches6004(ApiDifference apiDiff) {
-        throwIfMissing(true, false, true, true);
+    private boolean matches6004(ApiDifferenceView view) {
+        throwIfInvalid();
 
-        if (!SelectorUtils.matchPath(field, apiDiff.getAffectedField())) {
+        if (!fieldMatcher.matches(view.getDifference().getAffectedField())) {
             return false;
         }
 
-        String[] args = getArgs(apiDiff);
-        String diffFrom = args[0];
-        String diffTo = args[1];
+        String diffFrom = view.getArgument(0);
+        String diffTo = view.getArgument(1);
 
-        return SelectorUtils.matchPath(from, diffFrom) && SelectorUtils.matchPath(to, diffTo);
+        return fromMatcher.matches(diffFrom) && toMatcher.matches(diffTo);
     }
 
     /**
      * field now non-final
      */
-    private boolean matches6005(ApiDifference apiDiff) {
-        throwIfMissing(true, false, false, false);
-        return SelectorUtils.matchPath(field, apiDiff.getAffectedField());
+    private boolean matches6005(ApiDifferenceView view) {
+        throwIfInvalid();
+        return fieldMatcher.matches(view.getDifference().getAffectedField());
     }
 
     /**
      * field now final
      */
-    private boolean matches6006(ApiDifference apiDiff) {
-        throwIfMissing(true, false, false, false);
-        return SelectorUtils.matchPath(field, apiDiff.getAffectedField());
+    private boolean matches6006(ApiDifferenceView view) {
+        throwIfInvalid();
+        return fieldMatcher.matches(view.getDifference().getAffectedField());
     }
 
     /**
      * field now non-static
      */
-    private boolean matches6007(ApiDifference apiDiff) {
-        throwIfMissing(true, false, false, false);
-        return SelectorUtils.matchPath(field, apiDiff.getAffectedField());
+    private boolean matches6007(ApiDifferenceView view) {
+        throwIfInvalid();
+        return fieldMatcher.matches(view.getDifference().getAffectedField());
     }
 
     /**
      * field now static
      */
-    private boolean matches6008(ApiDifference apiDiff) {
-        throwIfMissing(true, false, false, false);
-        return SelectorUtils.matchPath(field, apiDiff.getAffectedField());
+    private boolean matches6008(ApiDifferenceView view) {
+        throwIfInvalid();
+        return fieldMatcher.matches(view.getDifference().getAffectedField());
     }
 
     /**
      * field more accessible
      */
-    private boolean matches6009(ApiDifference apiDiff) {
-        throwIfMissing(true, false, false, false);
-        return SelectorUtils.matchPath(field, apiDiff.getAffectedField());
+    private boolean matches6009(ApiDifferenceView view) {
+        throwIfInvalid();
+        return fieldMatcher.matches(view.getDifference().getAffectedField());
     }
 
     /**
      * field less accessible
      */
-    private boolean matches6010(ApiDifference apiDiff) {
-        throwIfMissing(true, false, false, false);
-        return SelectorUtils.matchPath(field, apiDiff.getAffectedField());
+    private boolean matches6010(ApiDifferenceView view) {
+        throwIfInvalid();
+        return fieldMatcher.matches(view.getDifference().getAffectedField());
     }
 
     /**
      * removed a constant field
      */
-    private boolean matches6011(ApiDifference apiDiff) {
-        throwIfMissing(true, false, false, false);
-        return SelectorUtils.matchPath(field, apiDiff.getAffectedField());
+    private boolean matches6011(ApiDifferenceView view) {
+        throwIfInvalid();
+        return fieldMatcher.matches(view.getDifference().getAffectedField());
     }
 
     /**
      * method now in superclass
      */
-    private boolean matches7000(ApiDifference apiDiff) {
-        throwIfMissing(false, true, false, false);
-        return SelectorUtils.matchPath(method, removeVisibilityFromMethodSignature(apiDiff));
+    private boolean matches7000(ApiDifferenceView view) {
+        throwIfInvalid();
+        return matchesMethod(view);
     }
 
     /**
      * method now in interface
      */
-    private boolean matches7001(ApiDifference apiDiff) {
-        throwIfMissing(false, true, false, false);
-        return SelectorUtils.matchPath(method, removeVisibilityFromMethodSignature(apiDiff));
+    private boolean matches7001(ApiDifferenceView view) {
+        throwIfInvalid();
+        return matchesMethod(view);
     }
 
     /**
      * method removed
      */
-    private boolean matches7002(ApiDifference apiDiff) {
-        throwIfMissing(false, true, false, false);
-        return SelectorUtils.matchPath(method, removeVisibilityFromMethodSignature(apiDiff));
+    private boolean matches7002(ApiDifferenceView view) {
+        throwIfInvalid();
+        return matchesMethod(view);
     }
 
     /**
      * Method Overide Removed
      */
-    private boolean matches7003(ApiDifference apiDiff) {
-        throwIfMissing(false, true, false, false);
-        return SelectorUtils.matchPath(method, removeVisibilityFromMethodSignature(apiDiff));
+    private boolean matches7003(ApiDifferenceView view) {
+        throwIfInvalid();
+        return matchesMethod(view);
     }
 
     /**
      * Method Argument Count Changed
      */
-    private boolean matches7004(ApiDifference apiDiff) {
-        throwIfMissing(false, true, false, false);
-        return SelectorUtils.matchPath(method, removeVisibilityFromMethodSignature(apiDiff));
+    private boolean matches7004(ApiDifferenceView view) {
+        throwIfInvalid();
+        return matchesMethod(view);
     }
 
     private Object getDifferentiatorFor7005(ApiDifference apiDiff) {
@@ -625,26 +671,25 @@ public class Difference {
      * Method Argument Type changed
      */
     private boolean matches7005(List<ApiDifference> apiDiffs) {
-        throwIfMissing(false, true, false, true);
+        throwIfInvalid();
 
-        ApiDifference firstDiff = apiDiffs.get(0);
-        String methodSig = removeVisibilityFromMethodSignature(firstDiff);
-        if (!SelectorUtils.matchPath(method, methodSig)) {
+        String methodSig = ApiDifferenceView.of(apiDiffs.get(0)).getMethodSignature();
+        if (!methodMatcher.matches(methodSig)) {
             return false;
         }
 
         String newMethodSig = getNewMethodSignature(methodSig, apiDiffs);
-        return SelectorUtils.matchPath(to, newMethodSig);
+        return toMatcher.matches(newMethodSig);
     }
 
     public static String getNewMethodSignature(String methodSig, List<ApiDifference> apiDiffs) {
         String newMethodSig = methodSig;
         for (ApiDifference apiDiff : apiDiffs) {
-            String[] args = getArgs(apiDiff);
+            ApiDifferenceView view = ApiDifferenceView.of(apiDiff);
 
             // 1-based
-            int idx = Integer.parseInt(args[0]) - 1;
-            String diffNewType = args[1];
+            int idx = view.getIntArgument(0) - 1;
+            String diffNewType = view.getArgument(1);
 
             // construct the new full method signature
             newMethodSig = replaceNthArgumentType(newMethodSig, idx, diffNewType);
@@ -655,115 +700,98 @@ public class Difference {
     /**
      * Method Return Type changed
      */
-    private boolean matches7006(ApiDifference apiDiff) {
-        throwIfMissing(false, true, false, true);
+    private boolean matches7006(ApiDifferenceView view) {
+        throwIfInvalid();
 
-        String methodSig = removeVisibilityFromMethodSignature(apiDiff);
-        if (!SelectorUtils.matchPath(method, methodSig)) {
+        if (!matchesMethod(view)) {
             return false;
         }
 
-        String newRetType = getArgs(apiDiff)[0];
+        String newRetType = view.getArgument(0);
 
-        return SelectorUtils.matchPath(to, newRetType);
+        return toMatcher.matches(newRetType);
     }
 
     /**
      * Method has been Deprecated
      */
-    private boolean matches7007(ApiDifference apiDiff) {
-        throwIfMissing(false, true, false, false);
-        return SelectorUtils.matchPath(method, removeVisibilityFromMethodSignature(apiDiff));
+    private boolean matches7007(ApiDifferenceView view) {
+        throwIfInvalid();
+        return matchesMethod(view);
     }
 
     /**
      * Method has been Undeprecated
      */
-    private boolean matches7008(ApiDifference apiDiff) {
-        throwIfMissing(false, true, false, false);
-        return SelectorUtils.matchPath(method, removeVisibilityFromMethodSignature(apiDiff));
+    private boolean matches7008(ApiDifferenceView view) {
+        throwIfInvalid();
+        return matchesMethod(view);
     }
 
     /**
      * Method is now Less Accessible
      */
-    private boolean matches7009(ApiDifference apiDiff) {
-        throwIfMissing(false, true, false, false);
-        return SelectorUtils.matchPath(method, removeVisibilityFromMethodSignature(apiDiff));
+    private boolean matches7009(ApiDifferenceView view) {
+        throwIfInvalid();
+        return matchesMethod(view);
     }
 
     /**
      * Method is now More Accessible
      */
-    private boolean matches7010(ApiDifference apiDiff) {
-        throwIfMissing(false, true, false, false);
-        return SelectorUtils.matchPath(method, removeVisibilityFromMethodSignature(apiDiff));
+    private boolean matches7010(ApiDifferenceView view) {
+        throwIfInvalid();
+        return matchesMethod(view);
     }
 
     /**
      * Method Added
      */
-    private boolean matches7011(ApiDifference apiDiff) {
-        throwIfMissing(false, true, false, false);
-        return SelectorUtils.matchPath(method, removeVisibilityFromMethodSignature(apiDiff));
+    private boolean matches7011(ApiDifferenceView view) {
+        throwIfInvalid();
+        return matchesMethod(view);
     }
 
     /**
      * Method Added to Interface
      */
-    private boolean matches7012(ApiDifference apiDiff) {
-        throwIfMissing(false, true, false, false);
-        return SelectorUtils.matchPath(method, removeVisibilityFromMethodSignature(apiDiff));
+    private boolean matches7012(ApiDifferenceView view) {
+        throwIfInvalid();
+        return matchesMethod(view);
     }
 
     /**
      * Abstract Method Added to Class
      */
-    private boolean matches7013(ApiDifference apiDiff) {
-        throwIfMissing(false, true, false, false);
-        return SelectorUtils.matchPath(method, removeVisibilityFromMethodSignature(apiDiff));
+    private boolean matches7013(ApiDifferenceView view) {
+        throwIfInvalid();
+        return matchesMethod(view);
     }
 
     /**
      * Method now final
      */
-    private boolean matches7014(ApiDifference apiDiff) {
-        throwIfMissing(false, true, false, false);
-        return SelectorUtils.matchPath(method, removeVisibilityFromMethodSignature(apiDiff));
+    private boolean matches7014(ApiDifferenceView view) {
+        throwIfInvalid();
+        return matchesMethod(view);
     }
 
     /**
      * Method now non-final
      */
-    private boolean matches7015(ApiDifference apiDiff) {
-        throwIfMissing(false, true, false, false);
-        return SelectorUtils.matchPath(method, removeVisibilityFromMethodSignature(apiDiff));
+    private boolean matches7015(ApiDifferenceView view) {
+        throwIfInvalid();
+        return matchesMethod(view);
     }
 
     /**
      * Class format version increased
      */
-    private boolean matches10000(ApiDifference apiDiff) {
-        throwIfMissing(false, false, true, true);
-
-        int fromVersion = 0;
-        int toVersion = 0;
-        try {
-            fromVersion = Integer.parseInt(from);
-        } catch (NumberFormatException e) {
-            throw new IllegalArgumentException("Failed to parse the \"from\" parameter as a number for " + this);
-        }
-
-        try {
-            toVersion = Integer.parseInt(to);
-        } catch (NumberFormatException e) {
-            throw new IllegalArgumentException("Failed to parse the \"to\" parameter as a number for " + this);
-        }
-
-        String[] args = getArgs(apiDiff);
+    private boolean matches10000(ApiDifferenceView view) {
+        throwIfInvalid();
 
-        int reportedOld = Integer.parseInt(args[0]);
-        int reportedNew = Integer.parseInt(args[1]);
+        int reportedOld = view.getIntArgument(0);
+        int reportedNew = view.getIntArgument(1);
 
         return fromVersion == reportedOld && toVersion == reportedNew;
     }
@@ -771,66 +799,116 @@ public class Difference {
     /**
      * Class format version decreased
      */
-    private boolean matches10001(ApiDifference apiDiff) {
-        throwIfMissing(false, false, true, true);
-
-        int fromVersion = 0;
-        int toVersion = 0;
-        try {
-            fromVersion = Integer.parseInt(from);
-        } catch (NumberFormatException e) {
-            throw new IllegalArgumentException("Failed to parse the \"from\" parameter as a number for " + this);
-        }
+    private boolean matches10001(ApiDifferenceView view) {
+        throwIfInvalid();
 
-        try {
-            toVersion = Integer.parseInt(to);
-        } catch (NumberFormatException e) {
-            throw new IllegalArgumentException("Failed to parse the \"to\" parameter as a number for " + this);
-        }
-
-        String[] args = getArgs(apiDiff);
-
-        int reportedOld = Integer.parseInt(args[0]);
-        int reportedNew = Integer.parseInt(args[1]);
+        int reportedOld = view.getIntArgument(0);
+        int reportedNew = view.getIntArgument(1);
 
         return fromVersion == reportedOld && toVersion == reportedNew;
     }
 
-    private static String[] getArgs(ApiDifference apiDiff) {
-        String args = apiDiff.getReport(ARGS_EXTRACTOR);
-        return args.split("&");
+    private void throwIfInvalid() {
+        if (invalid != null) {
+            throw new IllegalArgumentException(invalid);
+        }
+    }
+
+    private String validate() {
+        switch (differenceType) {
+            case 4000:
+            case 4001:
+            case 5000:
+            case 5001:
+                return getMissingParameters(false, false, false, true);
+            case 6004:
+                return getMissingParameters(true, false, true, true);
+            case 6000:
+            case 6001:
+            case 6002:
+            case 6003:
+            case 6005:
+            case 6006:
+            case 6007:
+            case 6008:
+            case 6009:
+            case 6010:
+            case 6011:
+                return getMissingParameters(true, false, false, false);
+            case 7005:
+            case 7006:
+                return getMissingParameters(false, true, false, true);
+            case 7000:
+            case 7001:
+            case 7002:
+            case 7003:
+            case 7004:
+            case 7007:
+            case 7008:
+            case 7009:
+            case 7010:
+            case 7011:
+            case 7012:
+            case 7013:
+            case 7014:
+            case 7015:
+                return getMissingParameters(false, true, false, false);
+            case 10000:
+            case 10001:
+                String missing = getMissingParameters(false, false, true, true);
+                if (missing != null) {
+                    return missing;
+                }
+
+                try {
+                    fromVersion = Integer.parseInt(from);
+                } catch (NumberFormatException e) {
+                    return "Failed to parse the \"from\" parameter as a number for " + this;
+                }
+
+                try {
+                    toVersion = Integer.parseInt(to);
+                } catch (NumberFormatException e) {
+                    return "Failed to parse the \"to\" parameter as a number for " + this;
+                }
+                return null;
+            default:
+                return null;
+        }
     }
 
-    private void throwIfMissing(boolean field, boolean method, boolean from, boolean to) {
-        boolean doThrow = (field && this.field == null)
+    private String getMissingParameters(boolean field, boolean method, boolean from, boolean to) {
+        boolean missing = (field && this.field == null)
                 || (method && this.method == null)
                 || (from && this.from == null)
                 || (to && this.to == null);
 
-        if (doThrow) {
-            StringBuilder message = new StringBuilder("The following parameters are missing: ");
-            if (field && this.field == null) {
-                message.append("field, ");
-            }
+        if (!missing) {
+            return null;
+        }
 
-            if (method && this.method == null) {
-                message.append("method, ");
-            }
+        StringBuilder message = new StringBuilder("The following parameters are missing: ");
+        if (field && this.field == null) {
+            message.append("field, ");
+        }
 
-            if (from && this.from == null) {
-                message.append("from, ");
-            }
+        if (method && this.method == null) {
+            message.append("method, ");
+        }
 
-            if (to && this.to == null) {
-                message.append("to, ");
-            }
+        if (from && this.from == null) {
+            message.append("from, ");
+        }
 
-            message.replace(message.length() - 2, message.length(), "");
+        if (to && this.to == null) {
+            message.append("to, ");
+        }
 
-            message.append(" on ").append(this);
+        message.replace(message.length() - 2, message.length(), "");
 
-            throw new IllegalArgumentException(message.toString());
-        }
+        message.append(" on ").append(this);
+
+        return message.toString();
     }
 
     private static String replaceNthArgumentType(String signature, int idx, String newType) {
@@ -874,17 +952,7 @@ public class Difference {
         return bld.toString();
     }
 
-    private String removeVisibilityFromMethodSignature(ApiDifference apiDiff) {
-        String methodSig = apiDiff.getAffectedMethod();
-        if (methodSig == null) {
-            return null;
-        }
-
-        int spaceIdx = methodSig.indexOf(' ');
-        if (spaceIdx < 0) {
-            return methodSig;
-        } else {
-            return methodSig.substring(spaceIdx + 1);
-        }
+    private boolean matchesMethod(ApiDifferenceView view) {
+        return methodMatcher.matches(view.getMethodSignature());
     }
 }
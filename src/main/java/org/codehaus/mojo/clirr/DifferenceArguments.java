@@ -0,0 +1,61 @@
+package org.codehaus.mojo.clirr;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.ResourceBundle;
+
+/**
+ * Message texts which consist of nothing but the arguments of a difference, so that
+ * {@link net.sf.clirr.core.ApiDifference#getReport(net.sf.clirr.core.MessageTranslator)} hands them out, which is
+ * the only way to get at them. The arguments are separated by {@link #SEPARATOR}; arguments which the
+ * difference does not have are left as their placeholder.
+ * <p>
+ * This has to be public, for {@link ResourceBundle} to instantiate it.
+ *
+ * @since 2.9
+ */
+public class DifferenceArguments extends ResourceBundle {
+    static final char SEPARATOR = '\u0001';
+
+    /**
+     * The index of the first argument in a message text; the affected class, method and field come first.
+     */
+    static final int FIRST_ARGUMENT = 3;
+
+    static final int MAX_ARGUMENTS = 5;
+
+    private static final String TEXT;
+
+    static {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < MAX_ARGUMENTS; i++) {
+            if (i > 0) {
+                text.append(SEPARATOR);
+            }
+            text.append('{').append(FIRST_ARGUMENT + i).append('}');
+        }
+        TEXT = text.toString();
+    }
+
+    protected Object handleGetObject(String key) {
+        return TEXT;
+    }
+
+    public Enumeration<String> getKeys() {
+        return Collections.enumeration(Collections.<String>emptyList());
+    }
+}
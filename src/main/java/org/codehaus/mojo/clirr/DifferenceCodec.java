@@ -0,0 +1,130 @@
+package org.codehaus.mojo.clirr;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import net.sf.clirr.core.ApiDifference;
+import net.sf.clirr.core.Message;
+import net.sf.clirr.core.Severity;
+
+/**
+ * Writes differences as lines of tab separated fields and reads them back, for the files which keep differences
+ * between or during comparisons. Tabs, line breaks and backslashes within the fields are escaped.
+ *
+ * @since 2.9
+ */
+final class DifferenceCodec {
+    private DifferenceCodec() {}
+
+    /**
+     * @return the fields of the difference, separated by tabs
+     */
+    static String encode(ApiDifference difference) {
+        StringBuilder line = new StringBuilder();
+        line.append(difference.getMessage().getId());
+        line.append('\t').append(difference.getBinaryCompatibilitySeverity());
+        line.append('\t').append(difference.getSourceCompatibilitySeverity());
+        line.append('\t').append(escape(difference.getAffectedClass()));
+        line.append('\t').append(difference.getAffectedMethod() == null ? "" : escape(difference.getAffectedMethod()));
+        line.append('\t').append(difference.getAffectedField() == null ? "" : escape(difference.getAffectedField()));
+        String[] args = ApiDifferenceView.of(difference).getArguments();
+        for (int i = 0; i < args.length; i++) {
+            line.append('\t').append(escape(args[i]));
+        }
+        return line.toString();
+    }
+
+    /**
+     * @param fields the fields of a line, see {@link #split(String)}
+     * @param offset the index of the first field written by {@link #encode(ApiDifference)}
+     */
+    static ApiDifference decode(String[] fields, int offset) {
+        String[] args = null;
+        if (fields.length > offset + 6) {
+            args = new String[fields.length - offset - 6];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = unescape(fields[offset + 6 + i]);
+            }
+        }
+        return new ApiDifference(
+                new Message(Integer.parseInt(fields[offset]), false),
+                toSeverity(fields[offset + 1]),
+                toSeverity(fields[offset + 2]),
+                unescape(fields[offset + 3]),
+                fields[offset + 4].length() == 0 ? null : unescape(fields[offset + 4]),
+                fields[offset + 5].length() == 0 ? null : unescape(fields[offset + 5]),
+                args);
+    }
+
+    private static Severity toSeverity(String name) {
+        if (Severity.ERROR.toString().equals(name)) {
+            return Severity.ERROR;
+        } else if (Severity.WARNING.toString().equals(name)) {
+            return Severity.WARNING;
+        } else if (Severity.INFO.toString().equals(name)) {
+            return Severity.INFO;
+        }
+        throw new IllegalArgumentException("Unknown severity " + name);
+    }
+
+    static String escape(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    escaped.append("\\\\");
+                    break;
+                case '\t':
+                    escaped.append("\\t");
+                    break;
+                case '\n':
+                    escaped.append("\\n");
+                    break;
+                case '\r':
+                    escaped.append("\\r");
+                    break;
+                default:
+                    escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    static String unescape(String value) {
+        if (value == null || value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder unescaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                c = value.charAt(++i);
+                if (c == 't') {
+                    c = '\t';
+                } else if (c == 'n') {
+                    c = '\n';
+                } else if (c == 'r') {
+                    c = '\r';
+                }
+            }
+            unescaped.append(c);
+        }
+        return unescaped.toString();
+    }
+
+    static String[] split(String line) {
+        return line.split("\t", -1);
+    }
+}
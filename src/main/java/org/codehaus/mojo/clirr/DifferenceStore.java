@@ -0,0 +1,441 @@
+package org.codehaus.mojo.clirr;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import net.sf.clirr.core.ApiDifference;
+import net.sf.clirr.core.CheckerException;
+import net.sf.clirr.core.Severity;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Keeps the differences of a comparison, in memory until there are too many of them and then in run files. Each
+ * severity has its own bucket, so that the differences are in the order of the reports, highest severity first,
+ * as they occur. The differences grouped by class are sorted on demand, through an external merge sort once
+ * there are run files. Both views are read back one difference at a time.
+ * <p>
+ * The run files hold one difference per line, as written by {@link DifferenceCodec}.
+ *
+ * @since 2.9
+ */
+final class DifferenceStore implements Closeable {
+    /**
+     * The severities, in the order of the buckets.
+     */
+    static final Severity[] SEVERITIES = {Severity.ERROR, Severity.WARNING, Severity.INFO};
+
+    /**
+     * The number of differences to sort in memory at once when no limit has been set.
+     */
+    private static final int DEFAULT_RUN_SIZE = 50000;
+
+    /**
+     * Orders the differences by class, then by the method or field, then by severity.
+     */
+    private static final Comparator<ApiDifference> CLASS_ORDER = new Comparator<ApiDifference>() {
+        public int compare(ApiDifference d1, ApiDifference d2) {
+            int cmp = d1.getAffectedClass().compareTo(d2.getAffectedClass());
+            if (cmp == 0) {
+                cmp = getMember(d1).compareTo(getMember(d2));
+            }
+            if (cmp == 0) {
+                cmp = indexOf(d1.getMaximumSeverity()) - indexOf(d2.getMaximumSeverity());
+            }
+            return cmp;
+        }
+    };
+
+    /**
+     * The differences in memory, by the index of their severity in {@link #SEVERITIES}.
+     */
+    private List<List<ApiDifference>> buckets = newBuckets();
+
+    private int sizeInMemory;
+
+    /**
+     * The run files, by the index of their severity in {@link #SEVERITIES}, oldest first.
+     */
+    private final List<List<File>> runs = new ArrayList<List<File>>();
+
+    private int sizeInRuns;
+
+    /**
+     * The directory of the latest run files.
+     */
+    private File runDirectory;
+
+    private File directory;
+
+    private int maxInMemory;
+
+    DifferenceStore() {
+        for (int i = 0; i < SEVERITIES.length; i++) {
+            runs.add(new ArrayList<File>());
+        }
+    }
+
+    /**
+     * Lets the store move the differences to run files once it holds a number of them.
+     *
+     * @param directory   the directory to create the run files in
+     * @param maxInMemory the number of differences to keep in memory at most, or 0, for no limit
+     */
+    void setSpillThreshold(File directory, int maxInMemory) {
+        this.directory = directory;
+        this.maxInMemory = maxInMemory;
+    }
+
+    void add(ApiDifference difference) {
+        buckets.get(indexOf(difference.getMaximumSeverity())).add(difference);
+        sizeInMemory++;
+        if (maxInMemory > 0 && sizeInMemory >= maxInMemory && directory != null) {
+            try {
+                spill(directory);
+            } catch (IOException e) {
+                throw new CheckerException("Cannot move the differences to " + directory, e);
+            }
+        }
+    }
+
+    /**
+     * @return the number of differences
+     */
+    int size() {
+        return sizeInMemory + sizeInRuns;
+    }
+
+    /**
+     * Moves the differences in memory to run files, one per severity.
+     *
+     * @param directory the directory to create the files in
+     * @return the number of differences which have been moved
+     */
+    int spill(File directory) throws IOException {
+        if (sizeInMemory == 0) {
+            return 0;
+        }
+        directory.mkdirs();
+        runDirectory = directory;
+        for (int i = 0; i < SEVERITIES.length; i++) {
+            if (!buckets.get(i).isEmpty()) {
+                runs.get(i).add(writeRun(directory, buckets.get(i)));
+            }
+        }
+        int count = sizeInMemory;
+        sizeInRuns += count;
+        buckets = newBuckets();
+        sizeInMemory = 0;
+        return count;
+    }
+
+    /**
+     * Reads the differences of a severity, or of all severities, highest first, in the order they occurred in.
+     * No difference may be added until the cursor is closed.
+     *
+     * @param severity the severity, or null, for all differences
+     */
+    Cursor bySeverity(Severity severity) {
+        List<Iterator<ApiDifference>> sources = new ArrayList<Iterator<ApiDifference>>();
+        for (int i = 0; i < SEVERITIES.length; i++) {
+            if (severity == null || SEVERITIES[i].equals(severity)) {
+                for (File run : runs.get(i)) {
+                    sources.add(new RunReader(run, false));
+                }
+                sources.add(buckets.get(i).iterator());
+            }
+        }
+        return new Cursor(sources, null);
+    }
+
+    /**
+     * Reads the differences ordered by class, then by the method or field, then by severity. No difference may
+     * be added until the cursor is closed.
+     */
+    Cursor byClass() {
+        if (sizeInRuns == 0) {
+            List<ApiDifference> sorted = new ArrayList<ApiDifference>(sizeInMemory);
+            for (List<ApiDifference> bucket : buckets) {
+                sorted.addAll(bucket);
+            }
+            Collections.sort(sorted, CLASS_ORDER);
+            return new Cursor(Collections.<Iterator<ApiDifference>>singletonList(sorted.iterator()), null);
+        }
+
+        // sort the differences chunk by chunk into temporary runs, and merge those
+        int runSize = maxInMemory > 0 ? maxInMemory : DEFAULT_RUN_SIZE;
+        List<Iterator<ApiDifference>> sources = new ArrayList<Iterator<ApiDifference>>();
+        Cursor all = bySeverity(null);
+        try {
+            List<ApiDifference> chunk = new ArrayList<ApiDifference>(Math.min(runSize, size()));
+            while (all.hasNext()) {
+                chunk.add(all.next());
+                if (chunk.size() == runSize || !all.hasNext()) {
+                    Collections.sort(chunk, CLASS_ORDER);
+                    sources.add(new RunReader(writeRun(runDirectory, chunk), true));
+                    chunk.clear();
+                }
+            }
+        } catch (IOException e) {
+            Cursor.close(sources);
+            throw new CheckerException("Cannot sort the differences in " + runDirectory, e);
+        } finally {
+            all.close();
+        }
+        return new Cursor(sources, CLASS_ORDER);
+    }
+
+    /**
+     * Deletes the run files and lets go of the differences in memory. The store is empty afterwards.
+     */
+    public void close() {
+        for (List<File> severityRuns : runs) {
+            for (File run : severityRuns) {
+                run.delete();
+            }
+            severityRuns.clear();
+        }
+        sizeInRuns = 0;
+        buckets = newBuckets();
+        sizeInMemory = 0;
+    }
+
+    private static File writeRun(File directory, List<ApiDifference> differences) throws IOException {
+        // the run is deleted by close(), or along with the spill directory once the mojo is done
+        File run = File.createTempFile("clirr-differences", ".txt", directory);
+        boolean written = false;
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(run), "UTF-8"), 65536);
+            try {
+                for (ApiDifference difference : differences) {
+                    writer.write(DifferenceCodec.encode(difference));
+                    writer.write('\n');
+                }
+            } finally {
+                writer.close();
+            }
+            written = true;
+        } finally {
+            if (!written) {
+                run.delete();
+            }
+        }
+        return run;
+    }
+
+    private static List<List<ApiDifference>> newBuckets() {
+        List<List<ApiDifference>> buckets = new ArrayList<List<ApiDifference>>(SEVERITIES.length);
+        for (int i = 0; i < SEVERITIES.length; i++) {
+            buckets.add(new ArrayList<ApiDifference>());
+        }
+        return buckets;
+    }
+
+    /**
+     * @return the index of a severity in {@link #SEVERITIES}; differences without a severity go last
+     */
+    static int indexOf(Severity severity) {
+        if (Severity.ERROR.equals(severity)) {
+            return 0;
+        } else if (Severity.WARNING.equals(severity)) {
+            return 1;
+        }
+        return 2;
+    }
+
+    private static String getMember(ApiDifference difference) {
+        if (difference.getAffectedMethod() != null) {
+            return difference.getAffectedMethod();
+        } else if (difference.getAffectedField() != null) {
+            return difference.getAffectedField();
+        }
+        return "";
+    }
+
+    /**
+     * Reads the differences of several sources, either one after the other or, with a comparator, merging
+     * sources which are sorted by it. A cursor which has been read to its end closes itself.
+     */
+    static final class Cursor implements Iterator<ApiDifference>, Closeable {
+        private final List<Iterator<ApiDifference>> sources;
+
+        private final PriorityQueue<Head> heads;
+
+        private int current;
+
+        private Cursor(List<Iterator<ApiDifference>> sources, final Comparator<ApiDifference> comparator) {
+            this.sources = sources;
+            if (comparator == null) {
+                heads = null;
+                return;
+            }
+            heads = new PriorityQueue<Head>(Math.max(1, sources.size()), new Comparator<Head>() {
+                public int compare(Head h1, Head h2) {
+                    int cmp = comparator.compare(h1.difference, h2.difference);
+                    // the earlier source first, which keeps the merge stable
+                    return cmp != 0 ? cmp : h1.source - h2.source;
+                }
+            });
+            for (int i = 0; i < sources.size(); i++) {
+                advance(i);
+            }
+        }
+
+        public boolean hasNext() {
+            if (heads != null) {
+                return !heads.isEmpty();
+            }
+            while (current < sources.size()) {
+                if (sources.get(current).hasNext()) {
+                    return true;
+                }
+                close(sources.get(current++));
+            }
+            return false;
+        }
+
+        public ApiDifference next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (heads == null) {
+                return sources.get(current).next();
+            }
+            Head head = heads.poll();
+            advance(head.source);
+            if (heads.isEmpty()) {
+                close();
+            }
+            return head.difference;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        public void close() {
+            close(sources);
+        }
+
+        private void advance(int source) {
+            Iterator<ApiDifference> iterator = sources.get(source);
+            if (iterator.hasNext()) {
+                heads.add(new Head(source, iterator.next()));
+            } else {
+                close(iterator);
+            }
+        }
+
+        static void close(List<Iterator<ApiDifference>> sources) {
+            for (Iterator<ApiDifference> source : sources) {
+                close(source);
+            }
+        }
+
+        private static void close(Iterator<ApiDifference> source) {
+            if (source instanceof RunReader) {
+                ((RunReader) source).close();
+            }
+        }
+    }
+
+    private static final class Head {
+        private final int source;
+
+        private final ApiDifference difference;
+
+        Head(int source, ApiDifference difference) {
+            this.source = source;
+            this.difference = difference;
+        }
+    }
+
+    /**
+     * Reads the differences of a run file, which is opened when it is first read from.
+     */
+    private static final class RunReader implements Iterator<ApiDifference> {
+        private final File run;
+
+        private final boolean temporary;
+
+        private BufferedReader reader;
+
+        private String line;
+
+        private boolean closed;
+
+        RunReader(File run, boolean temporary) {
+            this.run = run;
+            this.temporary = temporary;
+        }
+
+        public boolean hasNext() {
+            if (line == null && !closed) {
+                try {
+                    if (reader == null) {
+                        reader = new BufferedReader(new InputStreamReader(new FileInputStream(run), "UTF-8"), 65536);
+                    }
+                    line = reader.readLine();
+                } catch (IOException e) {
+                    close();
+                    throw new CheckerException("Cannot read back the differences from " + run, e);
+                }
+                if (line == null) {
+                    close();
+                }
+            }
+            return line != null;
+        }
+
+        public ApiDifference next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ApiDifference difference = DifferenceCodec.decode(DifferenceCodec.split(line), 0);
+            line = null;
+            return difference;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        void close() {
+            if (!closed) {
+                closed = true;
+                IOUtil.close(reader);
+                if (temporary) {
+                    run.delete();
+                }
+            }
+        }
+    }
+}
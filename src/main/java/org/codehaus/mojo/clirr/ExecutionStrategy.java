@@ -0,0 +1,230 @@
+package org.codehaus.mojo.clirr;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * The way the classes are compared, see the <code>strategy</code> parameter, along with the reason it was chosen.
+ * Unless a strategy is configured, it is chosen from what is known before any class has been read: the number
+ * and size of the class files, the number of dependencies, the heap budget and the time the previous comparison
+ * took. Only {@link #SERIAL}, {@link #PARALLEL} and {@link #STREAMING} are ever chosen: {@link #CACHED} takes
+ * over earlier results, which is only done when asked for.
+ *
+ * @since 2.9
+ */
+final class ExecutionStrategy {
+    static final String AUTO = "auto";
+
+    /**
+     * Read all classes up front and compare them in a single thread.
+     */
+    static final String SERIAL = "serial";
+
+    /**
+     * Read all classes up front and compare them in several threads.
+     */
+    static final String PARALLEL = "parallel";
+
+    /**
+     * Read, compare and release the classes one pair at a time.
+     */
+    static final String STREAMING = "streaming";
+
+    /**
+     * Only compare the classes which have changed since the previous comparison, see <code>incremental</code>.
+     */
+    static final String CACHED = "cached";
+
+    /**
+     * Below this many classes, a single thread is done before a pool of threads pays off.
+     */
+    static final int SMALL_MODULE_CLASSES = 500;
+
+    /**
+     * The number of classes which keep a thread busy long enough to be worth starting it.
+     */
+    static final int CLASSES_PER_THREAD = 250;
+
+    /**
+     * Roughly how much more heap the model of a class takes than its class file.
+     */
+    static final int MODEL_BYTES_PER_CLASS_FILE_BYTE = 8;
+
+    /**
+     * Comparisons which took longer than this are worth only checking what changed, which the reason for the
+     * strategy suggests.
+     */
+    static final long SLOW_COMPARISON_MILLIS = 10000;
+
+    private static final String FORMAT = "clirr-timings-1";
+
+    private final String name;
+
+    private final int threads;
+
+    private final String reason;
+
+    private ExecutionStrategy(String name, int threads, String reason) {
+        this.name = name;
+        this.threads = threads;
+        this.reason = reason;
+    }
+
+    /**
+     * @param name    one of the strategies apart from {@link #AUTO}
+     * @param threads the number of threads for {@link #PARALLEL}, or 1, to use one thread per processor
+     * @param reason  why the strategy is used
+     * @return the strategy, or null, if there is no strategy of that name
+     */
+    static ExecutionStrategy configured(String name, int threads, String reason) {
+        if (SERIAL.equals(name) || STREAMING.equals(name) || CACHED.equals(name)) {
+            return new ExecutionStrategy(name, 1, reason);
+        } else if (PARALLEL.equals(name)) {
+            int parallelThreads = threads > 1 ? threads : Runtime.getRuntime().availableProcessors();
+            return new ExecutionStrategy(name, parallelThreads, reason);
+        }
+        return null;
+    }
+
+    /**
+     * Chooses a strategy from the size of the comparison.
+     *
+     * @param classCount      the number of classes of both versions
+     * @param byteCount       the size of the class files of both versions
+     * @param dependencyCount the number of dependencies of the current version
+     * @param maxThreads      the number of threads to use at most, or 1, to use up to one per processor
+     * @param availableHeap   the number of bytes of the heap budget which are not in use
+     * @param previous        how the previous comparison went, or null, if it is not known
+     */
+    static ExecutionStrategy choose(
+            long classCount, long byteCount, int dependencyCount, int maxThreads, long availableHeap, Timing previous) {
+        int processors = maxThreads > 1 ? maxThreads : Runtime.getRuntime().availableProcessors();
+
+        StringBuilder signals = new StringBuilder();
+        signals.append(classCount).append(" classes, ").append(byteCount / 1024).append(" KB of class files, ");
+        signals.append(dependencyCount).append(" dependencies, ").append(availableHeap / (1024 * 1024));
+        signals.append(" MB of the heap budget left, ").append(processors).append(" threads");
+        if (previous != null) {
+            signals.append(", the last full comparison took ")
+                    .append(previous.millis)
+                    .append(" ms with the ");
+            signals.append(previous.strategy).append(" strategy");
+        }
+
+        long modelBytes = byteCount * MODEL_BYTES_PER_CLASS_FILE_BYTE;
+        if (modelBytes > availableHeap / 2) {
+            return new ExecutionStrategy(
+                    STREAMING,
+                    1,
+                    "reading all classes would take about " + modelBytes / (1024 * 1024) + " MB (" + signals + ")");
+        }
+        if (previous != null && previous.estimateMillis(classCount) >= SLOW_COMPARISON_MILLIS) {
+            signals.append("; incremental would only compare the classes which changed");
+        }
+        if (classCount < SMALL_MODULE_CLASSES || processors == 1) {
+            return new ExecutionStrategy(SERIAL, 1, "more threads would not pay off (" + signals + ")");
+        }
+        int threads = (int) Math.max(2, Math.min(processors, classCount / CLASSES_PER_THREAD));
+        return new ExecutionStrategy(PARALLEL, threads, "using " + threads + " threads (" + signals + ")");
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the number of threads to compare the classes with
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @return why this strategy was chosen
+     */
+    public String getReason() {
+        return reason;
+    }
+
+    public String toString() {
+        return name;
+    }
+
+    /**
+     * Reads how the last full comparison went.
+     *
+     * @return the timing, or null, if the file does not exist or is not understood
+     */
+    static Timing readTiming(File file) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        List<String> lines = FileUtils.loadFile(file);
+        if (lines.size() < 2 || !FORMAT.equals(lines.get(0))) {
+            return null;
+        }
+        String[] fields = lines.get(1).split(" ");
+        if (fields.length != 3) {
+            return null;
+        }
+        try {
+            return new Timing(fields[0], Long.parseLong(fields[1]), Long.parseLong(fields[2]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Keeps how a full comparison went, for the next ones to choose its strategy from.
+     */
+    static void writeTiming(File file, Timing timing) throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (directory != null) {
+            directory.mkdirs();
+        }
+        FileUtils.fileWrite(
+                file, "UTF-8", FORMAT + '\n' + timing.strategy + ' ' + timing.classCount + ' ' + timing.millis + '\n');
+    }
+
+    /**
+     * How long a comparison of all classes took. Comparisons with the {@link #CACHED} strategy are not timed,
+     * as they only tell how much has changed.
+     */
+    static final class Timing {
+        private final String strategy;
+
+        private final long classCount;
+
+        private final long millis;
+
+        Timing(String strategy, long classCount, long millis) {
+            this.strategy = strategy;
+            this.classCount = classCount;
+            this.millis = millis;
+        }
+
+        /**
+         * @return how long comparing the given number of classes would take, assuming the time grows with it
+         */
+        long estimateMillis(long classCount) {
+            return this.classCount > 0 ? millis * classCount / this.classCount : millis;
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package org.codehaus.mojo.clirr;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A path expression, as matched by {@link org.codehaus.plexus.util.SelectorUtils#matchPath(String, String)}, which
+ * is parsed once instead of on every match. Both <code>/</code> and <code>\</code> separate directories, the way
+ * <code>SelectorUtils</code> treats them for either separator, and a directory of the expression is matched by
+ * plain comparison when it has no wildcard, or when its only wildcard is a leading or trailing <code>*</code>.
+ * Matching a path does not allocate anything, except for <code>%regex[]</code> expressions.
+ *
+ * @since 2.9
+ */
+abstract class GlobMatcher {
+    private static final String REGEX_PREFIX = "%regex[";
+
+    private static final String ANT_PREFIX = "%ant[";
+
+    private static final String PATTERN_SUFFIX = "]";
+
+    /**
+     * Compiles a path expression.
+     *
+     * @param pattern the expression, which may be prefixed by <code>%regex[</code> or <code>%ant[</code>
+     * @return the matcher, or null if there is no expression
+     */
+    static GlobMatcher compile(String pattern) {
+        if (pattern == null) {
+            return null;
+        }
+        if (isPrefixed(pattern, REGEX_PREFIX)) {
+            return new RegexMatcher(
+                    pattern.substring(REGEX_PREFIX.length(), pattern.length() - PATTERN_SUFFIX.length()));
+        }
+        if (isPrefixed(pattern, ANT_PREFIX)) {
+            pattern = pattern.substring(ANT_PREFIX.length(), pattern.length() - PATTERN_SUFFIX.length());
+        }
+        return new PathMatcher(pattern);
+    }
+
+    /**
+     * @param path a path whose directories are separated by <code>/</code> or <code>\</code>
+     */
+    public boolean matches(String path) {
+        return matches(path, false);
+    }
+
+    /**
+     * @param className a class name whose packages are separated by dots, which is matched like the path of its
+     *            class file
+     */
+    public boolean matchesClassName(String className) {
+        return matches(className, true);
+    }
+
+    /**
+     * @param dotted whether dots separate the directories of the path as well
+     */
+    abstract boolean matches(String str, boolean dotted);
+
+    private static boolean isPrefixed(String pattern, String prefix) {
+        return pattern.length() > prefix.length() + PATTERN_SUFFIX.length()
+                && pattern.startsWith(prefix)
+                && pattern.endsWith(PATTERN_SUFFIX);
+    }
+
+    private static boolean isSeparator(char c, boolean dotted) {
+        return c == '/' || c == '\\' || (dotted && c == '.');
+    }
+
+    private static final class RegexMatcher extends GlobMatcher {
+        private final Pattern regex;
+
+        private final PatternSyntaxException invalid;
+
+        RegexMatcher(String regex) {
+            Pattern compiled = null;
+            PatternSyntaxException exception = null;
+            try {
+                compiled = Pattern.compile(regex);
+            } catch (PatternSyntaxException e) {
+                // reported when the expression is matched, as it used to be
+                exception = e;
+            }
+            this.regex = compiled;
+            this.invalid = exception;
+        }
+
+        boolean matches(String str, boolean dotted) {
+            if (invalid != null) {
+                throw invalid;
+            }
+            return regex.matcher(dotted ? str.replace('.', '/') : str).matches();
+        }
+    }
+
+    private static final class PathMatcher extends GlobMatcher {
+        private final boolean absolute;
+
+        private final Segment[] segments;
+
+        PathMatcher(String pattern) {
+            absolute = pattern.length() > 0 && isSeparator(pattern.charAt(0), false);
+
+            List<Segment> parsed = new ArrayList<Segment>();
+            for (StringTokenizer tokens = new StringTokenizer(pattern, "/\\"); tokens.hasMoreTokens(); ) {
+                parsed.add(Segment.compile(tokens.nextToken()));
+            }
+            segments = parsed.toArray(new Segment[parsed.size()]);
+        }
+
+        boolean matches(String str, boolean dotted) {
+            int length = str.length();
+            if ((length > 0 && isSeparator(str.charAt(0), dotted)) != absolute) {
+                return false;
+            }
+
+            // the directories of the path are matched one by one, going back to the last ** when one does not
+            // match, which is all the backtracking needed as ** is the only pattern which spans directories
+            int next = 0;
+            int start = skipSeparators(str, 0, dotted);
+            int starNext = -1;
+            int starStart = -1;
+            while (start < length) {
+                if (next < segments.length && segments[next] == Segment.ANY_DIRECTORIES) {
+                    starNext = ++next;
+                    starStart = start;
+                    continue;
+                }
+                int end = findSeparator(str, start, dotted);
+                if (next < segments.length && segments[next].matches(str, start, end)) {
+                    next++;
+                    start = skipSeparators(str, end, dotted);
+                } else if (starNext >= 0) {
+                    next = starNext;
+                    starStart = skipSeparators(str, findSeparator(str, starStart, dotted), dotted);
+                    start = starStart;
+                } else {
+                    return false;
+                }
+            }
+            while (next < segments.length && segments[next] == Segment.ANY_DIRECTORIES) {
+                next++;
+            }
+            return next == segments.length;
+        }
+
+        private static int skipSeparators(String str, int index, boolean dotted) {
+            while (index < str.length() && isSeparator(str.charAt(index), dotted)) {
+                index++;
+            }
+            return index;
+        }
+
+        private static int findSeparator(String str, int index, boolean dotted) {
+            while (index < str.length() && !isSeparator(str.charAt(index), dotted)) {
+                index++;
+            }
+            return index;
+        }
+    }
+
+    /**
+     * A single directory of a path expression.
+     */
+    private static class Segment {
+        /**
+         * The <code>**</code> directory, which matches any number of directories.
+         */
+        static final Segment ANY_DIRECTORIES = new Segment("**");
+
+        private static final int LITERAL = 0;
+
+        private static final int PREFIX = 1;
+
+        private static final int SUFFIX = 2;
+
+        private static final int ANY = 3;
+
+        private static final int WILDCARD = 4;
+
+        private final String text;
+
+        private final int kind;
+
+        private Segment(String pattern) {
+            int stars = 0;
+            boolean questionMark = false;
+            for (int i = 0; i < pattern.length(); i++) {
+                if (pattern.charAt(i) == '*') {
+                    stars++;
+                } else if (pattern.charAt(i) == '?') {
+                    questionMark = true;
+                }
+            }
+
+            if (questionMark) {
+                kind = WILDCARD;
+                text = pattern;
+            } else if (stars == 0) {
+                kind = LITERAL;
+                text = pattern;
+            } else if (stars == pattern.length()) {
+                kind = ANY;
+                text = "";
+            } else if (stars == 1 && pattern.charAt(pattern.length() - 1) == '*') {
+                kind = PREFIX;
+                text = pattern.substring(0, pattern.length() - 1);
+            } else if (stars == 1 && pattern.charAt(0) == '*') {
+                kind = SUFFIX;
+                text = pattern.substring(1);
+            } else {
+                kind = WILDCARD;
+                text = pattern;
+            }
+        }
+
+        static Segment compile(String pattern) {
+            return "**".equals(pattern) ? ANY_DIRECTORIES : new Segment(pattern);
+        }
+
+        /**
+         * Matches the directory between <code>start</code> and <code>end</code>.
+         */
+        boolean matches(String str, int start, int end) {
+            int length = end - start;
+            switch (kind) {
+                case LITERAL:
+                    return length == text.length() && str.regionMatches(start, text, 0, length);
+                case PREFIX:
+                    return length >= text.length() && str.regionMatches(start, text, 0, text.length());
+                case SUFFIX:
+                    return length >= text.length() && str.regionMatches(end - text.length(), text, 0, text.length());
+                case ANY:
+                    return true;
+                default:
+                    return matchWildcards(str, start, end);
+            }
+        }
+
+        /**
+         * Matches <code>*</code> and <code>?</code> the way {@link org.codehaus.plexus.util.SelectorUtils#match}
+         * does, going back to the last <code>*</code> when a character does not match.
+         */
+        private boolean matchWildcards(String str, int start, int end) {
+            int next = 0;
+            int index = start;
+            int starNext = -1;
+            int starIndex = -1;
+            while (index < end) {
+                char c = next < text.length() ? text.charAt(next) : 0;
+                if (next < text.length() && c == '*') {
+                    starNext = ++next;
+                    starIndex = index;
+                } else if (next < text.length() && (c == '?' || c == str.charAt(index))) {
+                    next++;
+                    index++;
+                } else if (starNext >= 0) {
+                    next = starNext;
+                    index = ++starIndex;
+                } else {
+                    return false;
+                }
+            }
+            while (next < text.length() && text.charAt(next) == '*') {
+                next++;
+            }
+            return next == text.length();
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package org.codehaus.mojo.clirr;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Keeps a comparison within a budget of heap. Before the classes are read up front, {@link #fits(long)} tells
+ * whether their models would fit; if not, the classes are streamed instead. While the classes are compared,
+ * {@link #check()} is called regularly, and when the heap in use approaches the budget, the registered
+ * {@link Reclaimer}s give up what can be rebuilt or kept elsewhere, such as cached classes or collected
+ * differences.
+ * <p>
+ * The heap in use includes garbage, so the governor asks for a garbage collection before it concludes that the
+ * budget is about to be exceeded. To keep that rare, the heap is only looked at every so many calls, and less and
+ * less often while reclaiming memory does not bring the heap in use below the threshold.
+ *
+ * @since 2.9
+ */
+class HeapGovernor {
+    /**
+     * The share of the budget at which the reclaimers are asked to free memory.
+     */
+    static final double RECLAIM_THRESHOLD = 0.9;
+
+    /**
+     * The number of calls to {@link #check()} between two looks at the heap.
+     */
+    private static final int CHECK_INTERVAL = 64;
+
+    /**
+     * The number of looks at the heap to skip after a garbage collection which showed that there was room left,
+     * and at first after reclaiming memory did not help.
+     */
+    private static final int QUIET_CHECKS = 16;
+
+    /**
+     * The number of looks at the heap to skip at most after reclaiming memory did not help.
+     */
+    private static final int MAX_BACK_OFF = 1024;
+
+    private final long budget;
+
+    private final Log log;
+
+    private final List<Reclaimer> reclaimers = new ArrayList<Reclaimer>();
+
+    private int calls;
+
+    private int quietChecks;
+
+    /**
+     * The number of looks at the heap to skip after the next reclaim which does not help, doubled after each one.
+     */
+    private int backOff = QUIET_CHECKS;
+
+    /**
+     * @param budget the number of bytes of heap the comparison may use
+     * @param log    where to tell about memory which has been reclaimed
+     */
+    HeapGovernor(long budget, Log log) {
+        this.budget = budget;
+        this.log = log;
+    }
+
+    /**
+     * Parses a size like <code>512m</code>, <code>2g</code>, <code>64k</code> or a number of bytes.
+     *
+     * @throws NumberFormatException if the size cannot be parsed
+     */
+    static long parseSize(String size) {
+        String value = size.trim().toLowerCase();
+        long factor = 1;
+        if (value.endsWith("k")) {
+            factor = 1024;
+        } else if (value.endsWith("m")) {
+            factor = 1024 * 1024;
+        } else if (value.endsWith("g")) {
+            factor = 1024 * 1024 * 1024;
+        }
+        if (factor > 1) {
+            value = value.substring(0, value.length() - 1).trim();
+        }
+        return Long.parseLong(value) * factor;
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    /**
+     * @return the number of bytes of the budget which are not in use, as far as is known without a garbage
+     *         collection
+     */
+    public long getAvailable() {
+        return Math.max(0, budget - getUsedHeap());
+    }
+
+    /**
+     * Tells whether the given number of bytes can still be allocated within the budget.
+     */
+    public boolean fits(long bytes) {
+        if (getUsedHeap() + bytes <= budget) {
+            return true;
+        }
+        System.gc();
+        return getUsedHeap() + bytes <= budget;
+    }
+
+    /**
+     * @param reclaimer called when the heap in use approaches the budget, in the order of registration
+     */
+    public void addReclaimer(Reclaimer reclaimer) {
+        reclaimers.add(reclaimer);
+    }
+
+    /**
+     * Called regularly while comparing, from the thread which reports the differences. Asks the reclaimers to
+     * free memory if the heap in use approaches the budget.
+     */
+    public void check() {
+        if (++calls % CHECK_INTERVAL != 0) {
+            return;
+        }
+        long threshold = (long) (budget * RECLAIM_THRESHOLD);
+        if (quietChecks > 0) {
+            quietChecks--;
+            return;
+        }
+        if (getUsedHeap() < threshold) {
+            return;
+        }
+        System.gc();
+        long used = getUsedHeap();
+        if (used < threshold) {
+            quietChecks = QUIET_CHECKS;
+            return;
+        }
+
+        StringBuilder reclaimed = new StringBuilder();
+        for (Reclaimer reclaimer : reclaimers) {
+            String description = reclaimer.reclaim();
+            if (description != null) {
+                reclaimed.append(reclaimed.length() == 0 ? "" : ", ").append(description);
+            }
+        }
+        if (reclaimed.length() > 0) {
+            log.info("Using " + toMegabytes(used) + " MB of the heap budget of " + toMegabytes(budget) + " MB, "
+                    + reclaimed);
+            System.gc();
+            used = getUsedHeap();
+        }
+        if (used < threshold) {
+            backOff = QUIET_CHECKS;
+        } else {
+            // what is left is needed, so asking again soon would only collect garbage for nothing
+            log.debug("Still using " + toMegabytes(used) + " MB after reclaiming memory, skipping the next " + backOff
+                    + " looks at the heap");
+            quietChecks = backOff;
+            backOff = Math.min(2 * backOff, MAX_BACK_OFF);
+        }
+    }
+
+    /**
+     * @return the number of bytes which can still be allocated on the heap, as far as is known without a garbage
+     *         collection
+     */
+    static long getAvailableHeap() {
+        return Math.max(0, Runtime.getRuntime().maxMemory() - getUsedHeap());
+    }
+
+    private static long getUsedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    static long toMegabytes(long bytes) {
+        return bytes / (1024 * 1024);
+    }
+
+    /**
+     * Something which holds memory it can do without.
+     */
+    interface Reclaimer {
+        /**
+         * Frees what can be freed.
+         *
+         * @return what has been freed, for the log, or null, if there was nothing to free
+         */
+        String reclaim();
+    }
+}
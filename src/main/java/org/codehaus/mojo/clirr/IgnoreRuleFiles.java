@@ -0,0 +1,167 @@
+package org.codehaus.mojo.clirr;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.CRC32;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.DirectoryScanner;
+import org.codehaus.plexus.util.ReaderFactory;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+
+/**
+ * Reads the files of ignored differences. The differences of a file are kept, compiled, for as long as the plugin
+ * is loaded, which Maven does once for all modules of a build, so that a file shared by the modules is only
+ * parsed once. A file is parsed again when its checksum changes.
+ *
+ * @since 2.9
+ */
+final class IgnoreRuleFiles {
+    private static final ConcurrentMap<File, Rules> CACHE = new ConcurrentHashMap<File, Rules>();
+
+    private IgnoreRuleFiles() {}
+
+    /**
+     * Replaces the directories among the given files by the XML files they contain, in the order of their paths.
+     */
+    static List<File> expand(List<File> files) {
+        List<File> expanded = new ArrayList<File>();
+        for (File file : files) {
+            if (file.isDirectory()) {
+                DirectoryScanner scanner = new DirectoryScanner();
+                scanner.setBasedir(file);
+                scanner.setIncludes(new String[] {"**/*.xml"});
+                scanner.scan();
+
+                String[] paths = scanner.getIncludedFiles();
+                Arrays.sort(paths);
+                for (int i = 0; i < paths.length; i++) {
+                    expanded.add(new File(file, paths[i]));
+                }
+            } else {
+                expanded.add(file);
+            }
+        }
+        return expanded;
+    }
+
+    /**
+     * Reads the ignored differences of the given files, concurrently if there are several. Files which cannot be
+     * read are logged and left out.
+     *
+     * @return the differences of all files, in the order of the files
+     */
+    static List<Difference> read(List<File> files, int threads, Log log) {
+        List<Difference> differences = new ArrayList<Difference>();
+        if (files.size() == 1 || threads <= 1) {
+            for (File file : files) {
+                try {
+                    differences.addAll(Arrays.asList(read(file)));
+                } catch (IOException e) {
+                    log.error("Could not read the ignored differences file " + file + ".", e);
+                } catch (XmlPullParserException e) {
+                    log.error("Could not read the ignored differences file " + file + ".", e);
+                }
+            }
+            return differences;
+        }
+
+        Scheduler.Window<Difference[]> window = Scheduler.window(threads, threads);
+        try {
+            int submitted = 0;
+            int taken = 0;
+            while (taken < files.size()) {
+                if (submitted < files.size() && !window.isFull()) {
+                    window.submit(createRead(files.get(submitted++)));
+                    continue;
+                }
+                File file = files.get(taken++);
+                try {
+                    differences.addAll(Arrays.asList(window.take()));
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    log.error("Could not read the ignored differences file " + file + ".", cause);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Interrupted while reading the ignored differences files.", e);
+        } finally {
+            window.cancel();
+        }
+        return differences;
+    }
+
+    private static Callable<Difference[]> createRead(final File file) {
+        return new Callable<Difference[]>() {
+            public Difference[] call() throws IOException, XmlPullParserException {
+                return read(file);
+            }
+        };
+    }
+
+    /**
+     * @return the compiled differences of the file, which are shared by all callers
+     */
+    private static Difference[] read(File file) throws IOException, XmlPullParserException {
+        byte[] content = Files.readAllBytes(file.toPath());
+        CRC32 crc = new CRC32();
+        crc.update(content, 0, content.length);
+        long checksum = crc.getValue();
+
+        File key = file.getAbsoluteFile();
+        Rules cached = CACHE.get(key);
+        if (cached != null && cached.length == content.length && cached.checksum == checksum) {
+            return cached.differences;
+        }
+
+        Difference[] differences = Difference.parseXml(ReaderFactory.newXmlReader(new ByteArrayInputStream(content)));
+        for (int i = 0; i < differences.length; i++) {
+            differences[i].compile();
+        }
+        CACHE.put(key, new Rules(content.length, checksum, differences));
+        return differences;
+    }
+
+    private static final class Rules {
+        private final long length;
+
+        private final long checksum;
+
+        private final Difference[] differences;
+
+        Rules(long length, long checksum, Difference[] differences) {
+            this.length = length;
+            this.checksum = checksum;
+            this.differences = differences;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package org.codehaus.mojo.clirr;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the ignored differences which may match a reported difference, without trying all of them. The ignored
+ * differences are indexed by their type and then by the literal start of their <code>className</code> pattern,
+ * in a trie, so that a reported difference is only matched against those of its type whose pattern could match
+ * its class. The candidates are returned in their original order, so that matching them gives the same result
+ * as matching all ignored differences.
+ *
+ * @since 2.9
+ */
+class IgnoreRuleIndex {
+    private static final String REGEX_PREFIX = "%regex[";
+
+    private static final String ANT_PREFIX = "%ant[";
+
+    private static final String PATTERN_SUFFIX = "]";
+
+    private static final int[] NO_CANDIDATES = new int[0];
+
+    /**
+     * The root of the trie of class name prefixes, by difference type.
+     */
+    private final Map<Integer, Node> roots = new HashMap<Integer, Node>();
+
+    /**
+     * @param rules the ignored differences, which may contain nulls
+     */
+    IgnoreRuleIndex(List<Difference> rules) {
+        for (int i = 0; i < rules.size(); i++) {
+            Difference rule = rules.get(i);
+            if (rule == null) {
+                continue;
+            }
+            Node node = roots.get(rule.getDifferenceType());
+            if (node == null) {
+                node = new Node();
+                roots.put(rule.getDifferenceType(), node);
+            }
+            String prefix = getPrefix(rule.getClassName());
+            for (int j = 0; j < prefix.length(); j++) {
+                node = node.child(prefix.charAt(j));
+            }
+            node.add(i);
+        }
+    }
+
+    /**
+     * @return the indexes of the ignored differences which may match the given difference, in ascending order
+     */
+    public int[] getCandidates(ApiDifferenceView view) {
+        Node node = roots.get(view.getId());
+        if (node == null) {
+            return NO_CANDIDATES;
+        }
+        String path = view.getClassPath();
+        int[] indexes = NO_CANDIDATES;
+        int count = 0;
+        for (int i = 0; node != null; i++) {
+            if (node.count > 0) {
+                if (count + node.count > indexes.length) {
+                    indexes = Arrays.copyOf(indexes, Math.max(2 * indexes.length, count + node.count));
+                }
+                System.arraycopy(node.rules, 0, indexes, count, node.count);
+                count += node.count;
+            }
+            node = i < path.length() ? node.children.get(path.charAt(i)) : null;
+        }
+
+        Arrays.sort(indexes, 0, count);
+        return count == indexes.length ? indexes : Arrays.copyOf(indexes, count);
+    }
+
+    /**
+     * Determines what the path of a class must start with for the pattern to match it: the directories of the
+     * pattern before its first wildcard. As {@link org.codehaus.plexus.util.SelectorUtils#matchPath} matches whole
+     * directories, and <code>**</code> may match none, the directory before a wildcard is left out as well.
+     *
+     * @param pattern a <code>className</code> pattern, or null
+     * @return the prefix, which is empty for patterns that may match any class
+     */
+    static String getPrefix(String pattern) {
+        if (pattern == null || pattern.startsWith(REGEX_PREFIX)) {
+            return "";
+        }
+        if (pattern.startsWith(ANT_PREFIX) && pattern.endsWith(PATTERN_SUFFIX)) {
+            pattern = pattern.substring(ANT_PREFIX.length(), pattern.length() - PATTERN_SUFFIX.length());
+        }
+        int end = pattern.length();
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '*' || c == '?') {
+                end = i;
+                break;
+            }
+        }
+        String prefix = pattern.substring(0, Math.max(0, pattern.lastIndexOf('/', end - 1)));
+        // empty directories are skipped by the matching, but not by a prefix
+        return prefix.indexOf("//") >= 0 ? "" : prefix;
+    }
+
+    private static final class Node {
+        private final Map<Character, Node> children = new HashMap<Character, Node>(4);
+
+        /**
+         * The indexes of the rules which end at this node.
+         */
+        private int[] rules = new int[0];
+
+        private int count;
+
+        Node child(char c) {
+            Node child = children.get(c);
+            if (child == null) {
+                child = new Node();
+                children.put(c, child);
+            }
+            return child;
+        }
+
+        void add(int rule) {
+            if (count == rules.length) {
+                rules = Arrays.copyOf(rules, Math.max(2, 2 * rules.length));
+            }
+            rules[count++] = rule;
+        }
+    }
+}
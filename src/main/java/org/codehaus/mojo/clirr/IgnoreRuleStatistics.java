@@ -0,0 +1,134 @@
+package org.codehaus.mojo.clirr;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Counts, for each ignored difference, how often reported differences were matched against it, how often it
+ * matched and how long matching took, so that ignored differences which no longer match anything can be found
+ * and removed. They are written as tab separated lines, one per ignored difference, after a line with the
+ * {@link #FORMAT} and a line with the names of the columns.
+ *
+ * @since 2.9
+ */
+final class IgnoreRuleStatistics {
+    static final String FORMAT = "clirr-rule-statistics-1";
+
+    private static final String COLUMNS = "index\ttype\tclassName\tfield\tmethod\tfrom\tto"
+            + "\tevaluations\tmatches\tdeferred\tresolved\tnanos\tstatus";
+
+    private final List<Difference> rules;
+
+    private final long[] evaluations;
+
+    private final long[] matches;
+
+    private final long[] deferred;
+
+    private final long[] resolved;
+
+    private final long[] nanos;
+
+    /**
+     * @param rules the ignored differences, which may contain nulls
+     */
+    IgnoreRuleStatistics(List<Difference> rules) {
+        this.rules = rules;
+        this.evaluations = new long[rules.size()];
+        this.matches = new long[rules.size()];
+        this.deferred = new long[rules.size()];
+        this.resolved = new long[rules.size()];
+        this.nanos = new long[rules.size()];
+    }
+
+    /**
+     * Counts the match of a reported difference against an ignored difference.
+     */
+    public void evaluated(int rule, Difference.Result result, long nanos) {
+        evaluations[rule]++;
+        if (result.getCode() == Difference.Result.MATCHED) {
+            matches[rule]++;
+        } else if (result.getCode() == Difference.Result.DEFERRED_MATCH) {
+            deferred[rule]++;
+        }
+        this.nanos[rule] += nanos;
+    }
+
+    /**
+     * Counts the resolution of a group of deferred matches.
+     */
+    public void resolved(int rule, boolean matched, long nanos) {
+        if (matched) {
+            resolved[rule]++;
+        }
+        this.nanos[rule] += nanos;
+    }
+
+    /**
+     * @return whether the ignored difference has not matched any reported difference
+     */
+    public boolean isUnmatched(int rule) {
+        return matches[rule] == 0 && resolved[rule] == 0;
+    }
+
+    /**
+     * @return the number of ignored differences which have not matched any reported difference
+     */
+    public int getUnmatchedCount() {
+        int count = 0;
+        for (int i = 0; i < rules.size(); i++) {
+            if (rules.get(i) != null && isUnmatched(i)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public void write(File file) throws IOException {
+        StringBuilder text = new StringBuilder(FORMAT).append('\n');
+        text.append(COLUMNS).append('\n');
+        for (int i = 0; i < rules.size(); i++) {
+            Difference rule = rules.get(i);
+            if (rule == null) {
+                continue;
+            }
+            text.append(i);
+            text.append('\t').append(rule.getDifferenceType());
+            text.append('\t').append(escape(rule.getClassName()));
+            text.append('\t').append(escape(rule.getField()));
+            text.append('\t').append(escape(rule.getMethod()));
+            text.append('\t').append(escape(rule.getFrom()));
+            text.append('\t').append(escape(rule.getTo()));
+            text.append('\t').append(evaluations[i]);
+            text.append('\t').append(matches[i]);
+            text.append('\t').append(deferred[i]);
+            text.append('\t').append(resolved[i]);
+            text.append('\t').append(nanos[i]);
+            text.append('\t').append(isUnmatched(i) ? "unmatched" : "matched");
+            text.append('\n');
+        }
+        file.getParentFile().mkdirs();
+        FileUtils.fileWrite(file, "UTF-8", text.toString());
+    }
+
+    private static String escape(String value) {
+        return value == null ? "" : DifferenceCodec.escape(value);
+    }
+}
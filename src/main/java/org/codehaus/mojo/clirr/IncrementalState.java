@@ -0,0 +1,388 @@
+package org.codehaus.mojo.clirr;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+import net.sf.clirr.core.ApiDifference;
+import net.sf.clirr.core.DiffListener;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * What a previous comparison found for each class, along with the state of its class file, so that the next
+ * comparison only has to check the classes which have changed since.
+ * <p>
+ * A class is compared again when its class file has been added, removed or changed, or when one of its
+ * superclasses, interfaces or enclosing classes in the current classes is compared again, since its differences
+ * depend on those. The class files which the compiler wrote, according to its incremental build state, are always
+ * compared by checksum; the others only when their length or modification time has changed. The differences of
+ * all other classes are taken over from the previous comparison, which is only used if it was made with the same
+ * configuration.
+ * <p>
+ * The configuration describes the files the comparison depends on, such as the jars of the previous version, by
+ * their digests. Those are kept along with the length and modification time of each file, so that only the files
+ * whose length or modification time has changed are read again.
+ *
+ * @since 2.9
+ */
+class IncrementalState {
+    private static final String FORMAT = "clirr-incremental-2";
+
+    /**
+     * Where the maven-compiler-plugin keeps its incremental build state, relative to the build directory.
+     */
+    static final String COMPILER_STATUS_DIRECTORY = "maven-status/maven-compiler-plugin/compile";
+
+    private static final String CREATED_FILES = "createdFiles.lst";
+
+    private String configuration;
+
+    private final Map<String, FileState> files = new TreeMap<String, FileState>();
+
+    private final Map<String, ClassState> classes = new TreeMap<String, ClassState>();
+
+    /**
+     * @param configuration describes everything apart from the current classes which the differences depend on
+     */
+    public void setConfiguration(String configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * @return whether the differences were found with a configuration
+     */
+    public boolean hasConfiguration(String configuration) {
+        return configuration.equals(this.configuration);
+    }
+
+    /**
+     * Works out the digest of a file the configuration depends on, taking it over from the previous comparison
+     * when the length and the modification time of the file are the same.
+     *
+     * @param file     an existing file
+     * @param previous the state of the previous comparison
+     * @return the digest of the file
+     */
+    public String digest(File file, IncrementalState previous) throws IOException {
+        String path = file.getAbsolutePath();
+        long length = file.length();
+        long lastModified = file.lastModified();
+        FileState state = previous.files.get(path);
+        if (state == null || state.length != length || state.lastModified != lastModified) {
+            state = new FileState(length, lastModified, BaselineBundle.checksum(file));
+        }
+        files.put(path, state);
+        return state.digest;
+    }
+
+    /**
+     * Reads the state of a previous comparison, whichever configuration it was made with.
+     *
+     * @return the state, which is empty if there was no previous comparison
+     */
+    public static IncrementalState read(File file) throws IOException {
+        IncrementalState state = new IncrementalState();
+        BufferedReader reader;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        } catch (FileNotFoundException e) {
+            return state;
+        }
+        try {
+            if (!FORMAT.equals(reader.readLine())) {
+                return state;
+            }
+            state.configuration = DifferenceCodec.unescape(reader.readLine());
+            ClassState classState = null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = DifferenceCodec.split(line);
+                if ("F".equals(fields[0])) {
+                    state.files.put(
+                            DifferenceCodec.unescape(fields[1]),
+                            new FileState(Long.parseLong(fields[2]), Long.parseLong(fields[3]), fields[4]));
+                } else if ("C".equals(fields[0])) {
+                    classState = new ClassState(
+                            Long.parseLong(fields[2]), Long.parseLong(fields[3]), Long.parseLong(fields[4]));
+                    for (int i = 5; i < fields.length; i++) {
+                        classState.dependencies.add(DifferenceCodec.unescape(fields[i]));
+                    }
+                    state.classes.put(DifferenceCodec.unescape(fields[1]), classState);
+                } else if ("D".equals(fields[0]) && classState != null) {
+                    classState.differences.add(DifferenceCodec.decode(fields, 1));
+                }
+            }
+        } catch (RuntimeException e) {
+            // a state which cannot be read is as good as none
+            state.configuration = null;
+            state.files.clear();
+            state.classes.clear();
+        } finally {
+            IOUtil.close(reader);
+        }
+        return state;
+    }
+
+    /**
+     * Reads the names of the classes which the compiler wrote in its last run.
+     *
+     * @param statusDirectory the directory of the incremental build state of the compiler
+     */
+    public static Set<String> readRecompiledClasses(File statusDirectory) throws IOException {
+        Set<String> classNames = new HashSet<String>();
+        File[] executions = statusDirectory.listFiles();
+        if (executions == null) {
+            return classNames;
+        }
+        for (int i = 0; i < executions.length; i++) {
+            File createdFiles = new File(executions[i], CREATED_FILES);
+            if (!createdFiles.isFile()) {
+                continue;
+            }
+            BufferedReader reader =
+                    new BufferedReader(new InputStreamReader(new FileInputStream(createdFiles), "UTF-8"));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim().replace('\\', '/');
+                    if (line.endsWith(".class")) {
+                        classNames.add(line.substring(0, line.length() - ".class".length())
+                                .replace('/', '.'));
+                    }
+                }
+            } finally {
+                IOUtil.close(reader);
+            }
+        }
+        return classNames;
+    }
+
+    /**
+     * Records the state of the current classes, and works out which classes do not have to be compared again.
+     *
+     * @param previous         the state of the previous comparison
+     * @param origClasses      the classes of the previous version
+     * @param currentClasses   the current classes, from <code>classesDirectory</code>
+     * @param classesDirectory the directory of the current classes
+     * @param recompiled       the names of the classes which the compiler wrote
+     * @return the differences of the classes which do not have to be compared again, by class name
+     */
+    public Map<String, List<ApiDifference>> update(
+            IncrementalState previous,
+            ClassSource origClasses,
+            ClassSource currentClasses,
+            File classesDirectory,
+            Set<String> recompiled)
+            throws IOException {
+        Set<String> classNames = new TreeSet<String>(origClasses.getClassNames());
+        classNames.addAll(currentClasses.getClassNames());
+
+        Set<String> changed = new HashSet<String>();
+        for (String className : classNames) {
+            ClassState previousState = previous.classes.get(className);
+            ClassState state;
+            if (!currentClasses.contains(className)) {
+                state = new ClassState(-1, 0, 0);
+            } else {
+                File file = new File(classesDirectory, className.replace('.', '/') + ".class");
+                long length = file.length();
+                long lastModified = file.lastModified();
+                if (previousState != null
+                        && previousState.length == length
+                        && previousState.lastModified == lastModified
+                        && !recompiled.contains(className)) {
+                    state = new ClassState(length, lastModified, previousState.checksum);
+                } else {
+                    state = new ClassState(length, lastModified, checksum(file));
+                }
+            }
+
+            if (previousState != null
+                    && previousState.length == state.length
+                    && previousState.checksum == state.checksum) {
+                state.dependencies.addAll(previousState.dependencies);
+            } else {
+                changed.add(className);
+                if (state.length >= 0) {
+                    state.dependencies.addAll(currentClasses.getSupertypeNames(className));
+                    for (int i = className.indexOf('$'); i > 0; i = className.indexOf('$', i + 1)) {
+                        state.dependencies.add(className.substring(0, i));
+                    }
+                }
+            }
+            classes.put(className, state);
+        }
+
+        Map<String, Boolean> outdated = new HashMap<String, Boolean>();
+        Map<String, List<ApiDifference>> reusable = new HashMap<String, List<ApiDifference>>();
+        for (String className : classNames) {
+            if (!isOutdated(className, changed, outdated)) {
+                reusable.put(className, previous.classes.get(className).differences);
+            }
+        }
+        return reusable;
+    }
+
+    private boolean isOutdated(String className, Set<String> changed, Map<String, Boolean> outdated) {
+        Boolean result = outdated.get(className);
+        if (result == null) {
+            // a cycle in the hierarchy does not compile, but make sure it does not loop either
+            outdated.put(className, Boolean.FALSE);
+            result = Boolean.valueOf(changed.contains(className));
+            for (String dependency : classes.get(className).dependencies) {
+                if (!result.booleanValue() && classes.containsKey(dependency)) {
+                    result = Boolean.valueOf(isOutdated(dependency, changed, outdated));
+                }
+            }
+            outdated.put(className, result);
+        }
+        return result.booleanValue();
+    }
+
+    /**
+     * Wraps a listener to record the differences reported to it, by class.
+     */
+    public DiffListener record(final DiffListener listener) {
+        return new DiffListener() {
+            public void start() {
+                listener.start();
+            }
+
+            public void reportDiff(ApiDifference difference) {
+                ClassState state = classes.get(difference.getAffectedClass());
+                if (state != null) {
+                    state.differences.add(difference);
+                }
+                listener.reportDiff(difference);
+            }
+
+            public void stop() {
+                listener.stop();
+            }
+        };
+    }
+
+    /**
+     * Forgets about classes, so that they are compared again next time.
+     */
+    public void removeAll(Collection<String> classNames) {
+        classes.keySet().removeAll(classNames);
+    }
+
+    public void write(File file) throws IOException {
+        file.getParentFile().mkdirs();
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try {
+            writer.print(FORMAT + '\n');
+            writer.print(DifferenceCodec.escape(configuration) + '\n');
+            for (Map.Entry<String, FileState> entry : files.entrySet()) {
+                FileState state = entry.getValue();
+                writer.print("F\t" + DifferenceCodec.escape(entry.getKey()) + '\t' + state.length + '\t'
+                        + state.lastModified + '\t' + state.digest + '\n');
+            }
+            for (Map.Entry<String, ClassState> entry : classes.entrySet()) {
+                ClassState state = entry.getValue();
+                StringBuilder line = new StringBuilder("C\t").append(DifferenceCodec.escape(entry.getKey()));
+                line.append('\t').append(state.length);
+                line.append('\t').append(state.lastModified);
+                line.append('\t').append(state.checksum);
+                for (String dependency : state.dependencies) {
+                    line.append('\t').append(DifferenceCodec.escape(dependency));
+                }
+                writer.print(line.append('\n'));
+                for (ApiDifference difference : state.differences) {
+                    writer.print("D\t" + DifferenceCodec.encode(difference) + '\n');
+                }
+            }
+        } finally {
+            writer.close();
+        }
+        if (writer.checkError()) {
+            throw new IOException("Error writing " + file);
+        }
+    }
+
+    private static long checksum(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        InputStream is = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = is.read(buffer)) > 0) {
+                crc.update(buffer, 0, n);
+            }
+        } finally {
+            IOUtil.close(is);
+        }
+        return crc.getValue();
+    }
+
+    private static final class FileState {
+        private final long length;
+
+        private final long lastModified;
+
+        private final String digest;
+
+        FileState(long length, long lastModified, String digest) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.digest = digest;
+        }
+    }
+
+    private static final class ClassState {
+        /**
+         * The length of the class file, or -1, if the class does not exist in the current classes.
+         */
+        private final long length;
+
+        private final long lastModified;
+
+        private final long checksum;
+
+        /**
+         * The names of the superclass, interfaces and enclosing classes.
+         */
+        private final List<String> dependencies = new ArrayList<String>();
+
+        private final List<ApiDifference> differences = new ArrayList<ApiDifference>();
+
+        ClassState(long length, long lastModified, long checksum) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.checksum = checksum;
+        }
+    }
+}
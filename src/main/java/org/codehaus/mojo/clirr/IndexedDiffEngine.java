@@ -0,0 +1,210 @@
+package org.codehaus.mojo.clirr;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.sf.clirr.core.ScopeSelector;
+import net.sf.clirr.core.internal.ApiDiffDispatcher;
+import net.sf.clirr.core.internal.ClassChangeCheck;
+import net.sf.clirr.core.internal.checks.FieldSetCheck;
+import net.sf.clirr.core.internal.checks.MethodSetCheck;
+import net.sf.clirr.core.spi.Field;
+import net.sf.clirr.core.spi.JavaType;
+import net.sf.clirr.core.spi.Method;
+import net.sf.clirr.core.spi.Scope;
+
+/**
+ * Matches the fields and methods of both versions of a class through hash indexes, and leaves out the members
+ * which have not changed before the Clirr member checks see them. Most members of most classes do not change
+ * between versions, while {@link MethodSetCheck} pairs overloaded methods with nested loops and works out
+ * their signatures several times over.
+ * <p>
+ * A member is only left out when it is the only one of its key in both versions, the name for fields and the
+ * name with the argument types for methods, and when all properties which the Clirr checks compare are the
+ * same. Clirr would pair such members with each other and report nothing for them, so the reported
+ * differences are the same as with {@link ClirrDiffEngine}.
+ *
+ * @since 2.9
+ */
+public class IndexedDiffEngine extends ClirrDiffEngine {
+    public static final String NAME = "indexed";
+
+    public List<ClassChangeCheck> createClassChecks(ApiDiffDispatcher dispatcher, ScopeSelector scopeSelector) {
+        List<ClassChangeCheck> classChecks = createTypeChecks(dispatcher, scopeSelector);
+        classChecks.add(new MemberSetCheck(
+                new FieldSetCheck(dispatcher, scopeSelector), new MethodSetCheck(dispatcher, scopeSelector)));
+        return classChecks;
+    }
+
+    private static final class MemberSetCheck implements ClassChangeCheck {
+        private final ClassChangeCheck fieldSetCheck;
+
+        private final ClassChangeCheck methodSetCheck;
+
+        MemberSetCheck(ClassChangeCheck fieldSetCheck, ClassChangeCheck methodSetCheck) {
+            this.fieldSetCheck = fieldSetCheck;
+            this.methodSetCheck = methodSetCheck;
+        }
+
+        public boolean check(JavaType baselineClass, JavaType currentClass) {
+            Field[] baselineFields = baselineClass.getFields();
+            Field[] currentFields = currentClass.getFields();
+            String[] baselineFieldKeys = getKeys(baselineFields);
+            String[] currentFieldKeys = getKeys(currentFields);
+            Set<String> unchangedFields =
+                    findUnchanged(baselineFields, baselineFieldKeys, currentFields, currentFieldKeys);
+
+            Method[] baselineMethods = baselineClass.getMethods();
+            Method[] currentMethods = currentClass.getMethods();
+            String[] baselineMethodKeys = getKeys(baselineMethods);
+            String[] currentMethodKeys = getKeys(currentMethods);
+            Set<String> unchangedMethods =
+                    findUnchanged(baselineMethods, baselineMethodKeys, currentMethods, currentMethodKeys);
+
+            JavaType baselineView = new MemberView(
+                    baselineClass,
+                    without(baselineFields, baselineFieldKeys, unchangedFields, new Field[0]),
+                    without(baselineMethods, baselineMethodKeys, unchangedMethods, new Method[0]));
+            JavaType currentView = new MemberView(
+                    currentClass,
+                    without(currentFields, currentFieldKeys, unchangedFields, new Field[0]),
+                    without(currentMethods, currentMethodKeys, unchangedMethods, new Method[0]));
+            return fieldSetCheck.check(baselineView, currentView) && methodSetCheck.check(baselineView, currentView);
+        }
+    }
+
+    /**
+     * Finds the members which are the only one of their key in both versions and have not changed.
+     *
+     * @return the keys of the unchanged members
+     */
+    private static <T> Set<String> findUnchanged(
+            T[] baselineMembers, String[] baselineKeys, T[] currentMembers, String[] currentKeys) {
+        Map<String, T> current = indexUnique(currentMembers, currentKeys);
+        Set<String> unchanged = new HashSet<String>();
+        for (Map.Entry<String, T> entry :
+                indexUnique(baselineMembers, baselineKeys).entrySet()) {
+            T bMember = entry.getValue();
+            T cMember = current.get(entry.getKey());
+            if (bMember != null && cMember != null && isUnchanged(bMember, cMember)) {
+                unchanged.add(entry.getKey());
+            }
+        }
+        return unchanged;
+    }
+
+    /**
+     * Indexes members by their key, mapping keys which are used by more than one member to null.
+     */
+    private static <T> Map<String, T> indexUnique(T[] members, String[] keys) {
+        Map<String, T> index = new HashMap<String, T>(members.length * 2);
+        for (int i = 0; i < members.length; i++) {
+            if (index.containsKey(keys[i])) {
+                index.put(keys[i], null);
+            } else {
+                index.put(keys[i], members[i]);
+            }
+        }
+        return index;
+    }
+
+    private static <T> T[] without(T[] members, String[] keys, Set<String> unchanged, T[] empty) {
+        if (unchanged.isEmpty()) {
+            return members;
+        }
+        List<T> changed = new ArrayList<T>(members.length - unchanged.size());
+        for (int i = 0; i < members.length; i++) {
+            if (!unchanged.contains(keys[i])) {
+                changed.add(members[i]);
+            }
+        }
+        return changed.toArray(empty);
+    }
+
+    private static String[] getKeys(Field[] fields) {
+        String[] keys = new String[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            keys[i] = fields[i].getName();
+        }
+        return keys;
+    }
+
+    /**
+     * @return the keys of the methods, their names with the argument types, the way Clirr matches overloads
+     */
+    private static String[] getKeys(Method[] methods) {
+        String[] keys = new String[methods.length];
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i < methods.length; i++) {
+            key.setLength(0);
+            key.append(methods[i].getName()).append('(');
+            JavaType[] argumentTypes = methods[i].getArgumentTypes();
+            for (int j = 0; j < argumentTypes.length; j++) {
+                if (j > 0) {
+                    key.append(", ");
+                }
+                key.append(argumentTypes[j].getName());
+            }
+            keys[i] = key.append(')').toString();
+        }
+        return keys;
+    }
+
+    private static boolean isUnchanged(Object bMember, Object cMember) {
+        if (bMember instanceof Field) {
+            return isUnchanged((Field) bMember, (Field) cMember);
+        }
+        return isUnchanged((Method) bMember, (Method) cMember);
+    }
+
+    /**
+     * Compares what {@link FieldSetCheck} compares.
+     */
+    private static boolean isUnchanged(Field bField, Field cField) {
+        return bField.isFinal() == cField.isFinal()
+                && bField.isStatic() == cField.isStatic()
+                && isSameScope(bField.getEffectiveScope(), cField.getEffectiveScope())
+                && bField.getType().toString().equals(cField.getType().toString())
+                && isSameConstant(bField.getConstantValue(), cField.getConstantValue());
+    }
+
+    /**
+     * Compares what {@link MethodSetCheck} compares, apart from the argument types, which are part of the key.
+     */
+    private static boolean isUnchanged(Method bMethod, Method cMethod) {
+        return bMethod.isFinal() == cMethod.isFinal()
+                && bMethod.isDeprecated() == cMethod.isDeprecated()
+                && isSameScope(bMethod.getEffectiveScope(), cMethod.getEffectiveScope())
+                && bMethod.getReturnType()
+                        .toString()
+                        .equals(cMethod.getReturnType().toString());
+    }
+
+    private static boolean isSameScope(Scope bScope, Scope cScope) {
+        return !bScope.isLessVisibleThan(cScope) && !bScope.isMoreVisibleThan(cScope);
+    }
+
+    private static boolean isSameConstant(Object bValue, Object cValue) {
+        return bValue == null
+                ? cValue == null
+                : cValue != null && bValue.toString().equals(cValue.toString());
+    }
+}
@@ -18,7 +18,6 @@ package org.codehaus.mojo.clirr;
 
 import net.sf.clirr.core.ApiDifference;
 import net.sf.clirr.core.DiffListenerAdapter;
-import net.sf.clirr.core.MessageTranslator;
 import net.sf.clirr.core.Severity;
 import org.apache.maven.plugin.logging.Log;
 
@@ -30,17 +29,13 @@ import org.apache.maven.plugin.logging.Log;
 public class LogDiffListener extends DiffListenerAdapter {
     private final Log log;
 
-    private final MessageTranslator messageTranslator;
-
     public LogDiffListener(Log log) {
         this.log = log;
-
-        this.messageTranslator = new MessageTranslator();
     }
 
     public void reportDiff(ApiDifference apiDifference) {
         String message = apiDifference.getMessage().getId() + ": " + apiDifference.getAffectedClass() + ": "
-                + apiDifference.getReport(messageTranslator);
+                + ApiDifferenceView.of(apiDifference).getReport();
 
         Severity severity = apiDifference.getMaximumSeverity();
         if (severity.equals(Severity.INFO)) {
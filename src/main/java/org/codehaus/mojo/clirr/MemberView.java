@@ -0,0 +1,100 @@
+package org.codehaus.mojo.clirr;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import net.sf.clirr.core.spi.Field;
+import net.sf.clirr.core.spi.JavaType;
+import net.sf.clirr.core.spi.Method;
+import net.sf.clirr.core.spi.Scope;
+
+/**
+ * A class with only some of its fields and methods, for the member checks of Clirr to look at. Everything else,
+ * including the hierarchy, is the one of the class itself.
+ *
+ * @since 2.9
+ */
+final class MemberView implements JavaType {
+    private final JavaType type;
+
+    private final Field[] fields;
+
+    private final Method[] methods;
+
+    MemberView(JavaType type, Field[] fields, Method[] methods) {
+        this.type = type;
+        this.fields = fields;
+        this.methods = methods;
+    }
+
+    public String getName() {
+        return type.getName();
+    }
+
+    public JavaType getContainingClass() {
+        return type.getContainingClass();
+    }
+
+    public JavaType[] getSuperClasses() {
+        return type.getSuperClasses();
+    }
+
+    public JavaType[] getAllInterfaces() {
+        return type.getAllInterfaces();
+    }
+
+    public JavaType[] getInnerClasses() {
+        return type.getInnerClasses();
+    }
+
+    public Method[] getMethods() {
+        return methods;
+    }
+
+    public Field[] getFields() {
+        return fields;
+    }
+
+    public boolean isPrimitive() {
+        return type.isPrimitive();
+    }
+
+    public boolean isArray() {
+        return type.isArray();
+    }
+
+    public boolean isFinal() {
+        return type.isFinal();
+    }
+
+    public boolean isAbstract() {
+        return type.isAbstract();
+    }
+
+    public boolean isInterface() {
+        return type.isInterface();
+    }
+
+    public Scope getDeclaredScope() {
+        return type.getDeclaredScope();
+    }
+
+    public Scope getEffectiveScope() {
+        return type.getEffectiveScope();
+    }
+
+    public String toString() {
+        return type.toString();
+    }
+}
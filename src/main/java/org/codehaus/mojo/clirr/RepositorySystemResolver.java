@@ -0,0 +1,243 @@
+package org.codehaus.mojo.clirr;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.factory.ArtifactFactory;
+import org.apache.maven.artifact.metadata.ArtifactMetadataRetrievalException;
+import org.apache.maven.artifact.resolver.ArtifactNotFoundException;
+import org.apache.maven.artifact.resolver.ArtifactResolutionException;
+import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.ArtifactProperties;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.collection.CollectRequest;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactDescriptorException;
+import org.eclipse.aether.resolution.ArtifactDescriptorRequest;
+import org.eclipse.aether.resolution.ArtifactDescriptorResult;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResult;
+import org.eclipse.aether.resolution.DependencyRequest;
+import org.eclipse.aether.resolution.DependencyResolutionException;
+import org.eclipse.aether.resolution.VersionRangeRequest;
+import org.eclipse.aether.resolution.VersionRangeResolutionException;
+import org.eclipse.aether.resolution.VersionRangeResult;
+import org.eclipse.aether.version.Version;
+
+/**
+ * Resolves the previous artifacts and their dependencies through the Maven 3 repository system.
+ * All requests go through the session of the running build, so they share its caches, its
+ * dependency collector and its artifact resolution with the rest of the build.
+ * <p>
+ * The results are handed out as Maven 2 artifacts, which is what the rest of the plugin works on.
+ *
+ * @since 2.9
+ */
+class RepositorySystemResolver {
+    private static final String REQUEST_CONTEXT = "clirr";
+
+    private final RepositorySystem repositorySystem;
+
+    private final RepositorySystemSession session;
+
+    private final List<RemoteRepository> repositories;
+
+    private final ArtifactFactory factory;
+
+    RepositorySystemResolver(
+            RepositorySystem repositorySystem,
+            RepositorySystemSession session,
+            List<RemoteRepository> repositories,
+            ArtifactFactory factory) {
+        this.repositorySystem = repositorySystem;
+        this.session = session;
+        this.repositories = repositories;
+        this.factory = factory;
+    }
+
+    /**
+     * Retrieves all versions of an artifact which are available in the repositories. Selecting a version
+     * is left to the caller, so that version ranges keep their Maven 2 semantics.
+     *
+     * @return the available versions, as a list of {@link org.apache.maven.artifact.versioning.ArtifactVersion}
+     */
+    public List retrieveAvailableVersions(Artifact artifact) throws ArtifactMetadataRetrievalException {
+        VersionRangeRequest request = new VersionRangeRequest(
+                new DefaultArtifact(
+                        artifact.getGroupId(),
+                        artifact.getArtifactId(),
+                        artifact.getClassifier(),
+                        artifact.getArtifactHandler().getExtension(),
+                        "[0,)"),
+                repositories,
+                REQUEST_CONTEXT);
+        try {
+            VersionRangeResult result = repositorySystem.resolveVersionRange(session, request);
+            List versions = new ArrayList(result.getVersions().size());
+            for (Version version : result.getVersions()) {
+                versions.add(new DefaultArtifactVersion(version.toString()));
+            }
+            return versions;
+        } catch (VersionRangeResolutionException e) {
+            throw new ArtifactMetadataRetrievalException(e.getMessage(), e, artifact);
+        }
+    }
+
+    /**
+     * Resolves the files of the given artifacts in a single request.
+     */
+    public void resolve(Collection artifacts) throws ArtifactResolutionException, ArtifactNotFoundException {
+        List<Artifact> pending = new ArrayList<Artifact>(artifacts.size());
+        List<ArtifactRequest> requests = new ArrayList<ArtifactRequest>(artifacts.size());
+        for (Iterator iter = artifacts.iterator(); iter.hasNext(); ) {
+            Artifact artifact = (Artifact) iter.next();
+            pending.add(artifact);
+            requests.add(new ArtifactRequest(toAetherArtifact(artifact), repositories, REQUEST_CONTEXT));
+        }
+
+        List<ArtifactResult> results;
+        try {
+            results = repositorySystem.resolveArtifacts(session, requests);
+        } catch (org.eclipse.aether.resolution.ArtifactResolutionException e) {
+            for (int i = 0; i < e.getResults().size(); i++) {
+                ArtifactResult result = e.getResults().get(i);
+                if (result.isMissing()) {
+                    throw new ArtifactNotFoundException(e.getMessage(), pending.get(i));
+                } else if (!result.isResolved()) {
+                    throw new ArtifactResolutionException(e.getMessage(), pending.get(i), e);
+                }
+            }
+            throw new ArtifactResolutionException(e.getMessage(), pending.get(0), e);
+        }
+
+        for (int i = 0; i < results.size(); i++) {
+            Artifact artifact = pending.get(i);
+            artifact.setFile(results.get(i).getArtifact().getFile());
+            artifact.setResolved(true);
+        }
+    }
+
+    /**
+     * Collects and resolves the transitive dependencies of the given artifacts. The direct dependencies
+     * of all artifacts are collected as a single graph, so that the collector of the session can work on
+     * them at once, and the whole graph is then resolved in a single request. The artifacts themselves
+     * are not part of the result.
+     *
+     * @return the resolved dependencies, as a list of {@link Artifact}
+     */
+    public List resolveDependencies(Collection artifacts) throws ArtifactResolutionException {
+        Map<String, Dependency> dependencies = new LinkedHashMap<String, Dependency>();
+        Map<String, Dependency> managedDependencies = new LinkedHashMap<String, Dependency>();
+        Artifact first = null;
+        for (Iterator iter = artifacts.iterator(); iter.hasNext(); ) {
+            Artifact artifact = (Artifact) iter.next();
+            if (first == null) {
+                first = artifact;
+            }
+            ArtifactDescriptorResult descriptor;
+            try {
+                descriptor = repositorySystem.readArtifactDescriptor(
+                        session,
+                        new ArtifactDescriptorRequest(toAetherArtifact(artifact), repositories, REQUEST_CONTEXT));
+            } catch (ArtifactDescriptorException e) {
+                throw new ArtifactResolutionException(e.getMessage(), artifact, e);
+            }
+            for (Dependency dependency : descriptor.getDependencies()) {
+                // unlike provided ones, test dependencies never show up in the API of the previous version
+                if (!Artifact.SCOPE_TEST.equals(dependency.getScope())) {
+                    putIfAbsent(dependencies, dependency);
+                }
+            }
+            for (Dependency dependency : descriptor.getManagedDependencies()) {
+                putIfAbsent(managedDependencies, dependency);
+            }
+        }
+        if (dependencies.isEmpty()) {
+            return new ArrayList();
+        }
+
+        CollectRequest collectRequest = new CollectRequest(
+                new ArrayList<Dependency>(dependencies.values()),
+                new ArrayList<Dependency>(managedDependencies.values()),
+                repositories);
+        collectRequest.setRequestContext(REQUEST_CONTEXT);
+        if (artifacts.size() == 1) {
+            collectRequest.setRootArtifact(toAetherArtifact(first));
+        }
+
+        List<ArtifactResult> results;
+        try {
+            results = repositorySystem
+                    .resolveDependencies(session, new DependencyRequest(collectRequest, null))
+                    .getArtifactResults();
+        } catch (DependencyResolutionException e) {
+            throw new ArtifactResolutionException(e.getMessage(), first, e);
+        }
+
+        List resolved = new ArrayList(results.size());
+        for (ArtifactResult result : results) {
+            resolved.add(toMavenArtifact(result));
+        }
+        return resolved;
+    }
+
+    private static void putIfAbsent(Map<String, Dependency> dependencies, Dependency dependency) {
+        org.eclipse.aether.artifact.Artifact artifact = dependency.getArtifact();
+        String key = artifact.getGroupId() + ":" + artifact.getArtifactId() + ":" + artifact.getExtension() + ":"
+                + artifact.getClassifier();
+        if (!dependencies.containsKey(key)) {
+            dependencies.put(key, dependency);
+        }
+    }
+
+    private Artifact toMavenArtifact(ArtifactResult result) {
+        org.eclipse.aether.artifact.Artifact resolved = result.getArtifact();
+        String classifier = resolved.getClassifier().length() == 0 ? null : resolved.getClassifier();
+        String scope = result.getRequest().getDependencyNode() == null
+                        || result.getRequest().getDependencyNode().getDependency() == null
+                ? Artifact.SCOPE_COMPILE
+                : result.getRequest().getDependencyNode().getDependency().getScope();
+        Artifact artifact = factory.createDependencyArtifact(
+                resolved.getGroupId(),
+                resolved.getArtifactId(),
+                VersionRange.createFromVersion(resolved.getBaseVersion()),
+                resolved.getProperty(ArtifactProperties.TYPE, resolved.getExtension()),
+                classifier,
+                scope);
+        artifact.setFile(resolved.getFile());
+        artifact.setResolved(true);
+        return artifact;
+    }
+
+    private static org.eclipse.aether.artifact.Artifact toAetherArtifact(Artifact artifact) {
+        return new DefaultArtifact(
+                artifact.getGroupId(),
+                artifact.getArtifactId(),
+                artifact.getClassifier(),
+                artifact.getArtifactHandler().getExtension(),
+                artifact.getVersion());
+    }
+}
@@ -0,0 +1,139 @@
+package org.codehaus.mojo.clirr;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * The threads which all goals of the plugin run their concurrent work on. There is a single pool per class
+ * loader of the plugin, which Maven shares between the modules of a reactor build, so that modules which are
+ * built concurrently, with <code>-T</code>, do not each start threads of their own. The pool steals work, so
+ * threads which are done with the tasks of one stage take over the tasks of the others.
+ * <p>
+ * Tasks are submitted through a {@link Window}, which bounds the number of tasks a stage has in flight, so that
+ * a stage producing work cannot run ahead of the stage consuming the results.
+ *
+ * @since 2.9
+ */
+final class Scheduler {
+    private static ForkJoinPool pool;
+
+    private Scheduler() {}
+
+    /**
+     * Returns the shared pool, which has as many threads as the most any caller has asked for. A caller which asks
+     * for more threads than the pool has gets a larger pool, which all later tasks run on, while the tasks of the
+     * previous pool run to completion before its threads end.
+     *
+     * @param threads the number of threads the caller is going to use at once
+     */
+    static synchronized ForkJoinPool getPool(int threads) {
+        int parallelism = Math.max(1, threads);
+        if (pool == null || pool.getParallelism() < parallelism) {
+            if (pool != null) {
+                pool.shutdown();
+            }
+            pool = new ForkJoinPool(parallelism, new WorkerFactory(), null, false);
+        }
+        return pool;
+    }
+
+    /**
+     * Creates a window for tasks on the shared pool.
+     *
+     * @param threads the number of threads the caller is going to use at once
+     * @param size    the number of tasks the caller may have in flight
+     */
+    static <T> Window<T> window(int threads, int size) {
+        return new Window<T>(threads, size);
+    }
+
+    /**
+     * A bounded number of tasks in flight, whose results are taken in the order the tasks were submitted in.
+     * The caller submits tasks until the window is full and then takes the oldest result to make room; tasks
+     * which are done before their turn keep their results until they are taken.
+     */
+    static final class Window<T> {
+        private final int threads;
+
+        private final int size;
+
+        private final LinkedList<Future<T>> pending = new LinkedList<Future<T>>();
+
+        Window(int threads, int size) {
+            this.threads = threads;
+            this.size = Math.max(1, size);
+        }
+
+        public boolean isFull() {
+            return pending.size() >= size;
+        }
+
+        public boolean isEmpty() {
+            return pending.isEmpty();
+        }
+
+        /**
+         * @throws IllegalStateException if the window is full
+         */
+        public void submit(Callable<T> task) {
+            if (isFull()) {
+                throw new IllegalStateException("The window is full");
+            }
+            // the pool would wrap checked exceptions of the task in a RuntimeException, a FutureTask passes them on
+            FutureTask<T> future = new FutureTask<T>(task);
+            // the pool is looked up for every task, as another caller may have replaced it by a larger one
+            getPool(threads).execute(future);
+            pending.add(future);
+        }
+
+        /**
+         * Waits for the oldest task and removes it from the window.
+         */
+        public T take() throws InterruptedException, ExecutionException {
+            return pending.removeFirst().get();
+        }
+
+        /**
+         * Cancels the tasks which have not started yet and forgets about all others.
+         */
+        public void cancel() {
+            for (Future<T> future : pending) {
+                future.cancel(false);
+            }
+            pending.clear();
+        }
+    }
+
+    /**
+     * Creates daemon threads, so that the pool does not keep Maven from exiting, which load classes from the
+     * plugin rather than from wherever the pool was first used.
+     */
+    private static final class WorkerFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+            ForkJoinWorkerThread thread = new ForkJoinWorkerThread(pool) {};
+            thread.setName("clirr-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            thread.setContextClassLoader(Scheduler.class.getClassLoader());
+            return thread;
+        }
+    }
+}
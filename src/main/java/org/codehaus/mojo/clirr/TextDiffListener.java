@@ -0,0 +1,81 @@
+package org.codehaus.mojo.clirr;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+import net.sf.clirr.core.ApiDifference;
+import net.sf.clirr.core.CheckerException;
+import net.sf.clirr.core.DiffListenerAdapter;
+
+/**
+ * A copy of Clirr's PlainDiffListener (which is final), which writes the same lines, but takes the text of a
+ * difference from its {@link ApiDifferenceView}, so that it is not formatted again for this listener. The lines
+ * are written in UTF-8, through a large buffer straight to the channel of the file.
+ *
+ * @since 2.9
+ */
+public class TextDiffListener extends DiffListenerAdapter {
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+    private final String outFile;
+
+    private final Writer out;
+
+    public TextDiffListener(String outFile) throws IOException {
+        this.outFile = outFile;
+        FileChannel channel = FileChannel.open(
+                new File(outFile).toPath(),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        CharsetEncoder encoder = StandardCharsets.UTF_8
+                .newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        out = Channels.newWriter(channel, encoder, 65536);
+    }
+
+    public void reportDiff(ApiDifference difference) {
+        try {
+            out.write(difference.getMaximumSeverity().toString());
+            out.write(": ");
+            out.write(String.valueOf(difference.getMessage().getId()));
+            out.write(": ");
+            out.write(difference.getAffectedClass());
+            out.write(": ");
+            out.write(ApiDifferenceView.of(difference).getReport());
+            out.write(LINE_SEPARATOR);
+        } catch (IOException e) {
+            throw new CheckerException("Cannot write to " + outFile, e);
+        }
+    }
+
+    public void stop() {
+        try {
+            out.close();
+        } catch (IOException e) {
+            throw new CheckerException("Cannot write to " + outFile, e);
+        }
+    }
+}
@@ -1,12 +1,17 @@
 package org.codehaus.mojo.clirr;
 
-import java.io.FileNotFoundException;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import java.io.BufferedOutputStream;
 import java.io.FileOutputStream;
-import java.io.PrintStream;
+import java.io.IOException;
+import java.io.OutputStream;
 
 import net.sf.clirr.core.ApiDifference;
+import net.sf.clirr.core.CheckerException;
 import net.sf.clirr.core.DiffListener;
-import net.sf.clirr.core.MessageTranslator;
 
 /**
  * A copy of Clirr's XmlDiffListener (which is not subclassable nor extendable in some way)
@@ -22,38 +27,69 @@ public class TypeRevealingXmlDiffListener implements DiffListener {
 
     private static final String DIFFERENCE = "difference";
 
-    private final MessageTranslator translator = new MessageTranslator();
+    private static final String ENCODING = "UTF-8";
+
+    private final String outFile;
 
-    private final PrintStream out;
+    private final OutputStream stream;
 
-    public TypeRevealingXmlDiffListener(String outFile) throws FileNotFoundException {
-        out = new PrintStream(new FileOutputStream(outFile));
+    private final XMLStreamWriter out;
+
+    public TypeRevealingXmlDiffListener(String outFile) throws IOException {
+        this.outFile = outFile;
+        stream = new BufferedOutputStream(new FileOutputStream(outFile), 65536);
+        try {
+            out = XMLOutputFactory.newInstance().createXMLStreamWriter(stream, ENCODING);
+        } catch (XMLStreamException e) {
+            stream.close();
+            throw new IOException("Cannot write XML to " + outFile + ": " + e.getMessage(), e);
+        }
     }
 
     public void reportDiff(ApiDifference difference) {
-        out.print("  <" + DIFFERENCE);
-        out.print(" type=\"" + difference.getMessage().getId() + "\"");
-        out.print(" binseverity=\"" + difference.getBinaryCompatibilitySeverity() + "\"");
-        out.print(" srcseverity=\"" + difference.getSourceCompatibilitySeverity() + "\"");
-        out.print(" class=\"" + difference.getAffectedClass() + "\"");
-        if (difference.getAffectedMethod() != null) {
-            out.print(" method=\"" + difference.getAffectedMethod() + "\"");
+        try {
+            out.writeCharacters("  ");
+            out.writeStartElement(DIFFERENCE);
+            out.writeAttribute("type", String.valueOf(difference.getMessage().getId()));
+            out.writeAttribute("binseverity", String.valueOf(difference.getBinaryCompatibilitySeverity()));
+            out.writeAttribute("srcseverity", String.valueOf(difference.getSourceCompatibilitySeverity()));
+            out.writeAttribute("class", difference.getAffectedClass());
+            if (difference.getAffectedMethod() != null) {
+                out.writeAttribute("method", difference.getAffectedMethod());
+            }
+            if (difference.getAffectedField() != null) {
+                out.writeAttribute("field", difference.getAffectedField());
+            }
+            out.writeCharacters(ApiDifferenceView.of(difference).getReport());
+            out.writeEndElement();
+            out.writeCharacters("\n");
+        } catch (XMLStreamException e) {
+            throw new CheckerException("Cannot write to " + outFile, e);
         }
-        if (difference.getAffectedField() != null) {
-            out.print(" field=\"" + difference.getAffectedField() + "\"");
-        }
-        out.print(">");
-        out.print(difference.getReport(translator)); // TODO: XML escapes??
-        out.println("</" + DIFFERENCE + '>');
     }
 
     public void start() {
-        out.println("<?xml version=\"1.0\"?>");
-        out.println('<' + DIFFREPORT + '>');
+        try {
+            out.writeStartDocument(ENCODING, "1.0");
+            out.writeCharacters("\n");
+            out.writeStartElement(DIFFREPORT);
+            out.writeCharacters("\n");
+        } catch (XMLStreamException e) {
+            throw new CheckerException("Cannot write to " + outFile, e);
+        }
     }
 
     public void stop() {
-        out.println("</" + DIFFREPORT + '>');
-        out.close();
+        try {
+            out.writeEndElement();
+            out.writeCharacters("\n");
+            out.writeEndDocument();
+            out.close();
+            stream.close();
+        } catch (XMLStreamException e) {
+            throw new CheckerException("Cannot write to " + outFile, e);
+        } catch (IOException e) {
+            throw new CheckerException("Cannot write to " + outFile, e);
+        }
     }
 }
@@ -0,0 +1,295 @@
+package org.codehaus.mojo.clirr;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import net.sf.clirr.core.CheckerException;
+import net.sf.clirr.core.spi.Field;
+import net.sf.clirr.core.spi.JavaType;
+import net.sf.clirr.core.spi.Method;
+import org.apache.bcel.classfile.AnnotationEntry;
+import org.apache.bcel.classfile.ClassParser;
+import org.apache.bcel.classfile.Constant;
+import org.apache.bcel.classfile.ConstantCP;
+import org.apache.bcel.classfile.ConstantClass;
+import org.apache.bcel.classfile.ConstantNameAndType;
+import org.apache.bcel.classfile.ConstantPool;
+import org.apache.bcel.classfile.ElementValuePair;
+import org.apache.bcel.classfile.FieldOrMethod;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.generic.ArrayType;
+import org.apache.bcel.generic.ObjectType;
+import org.apache.bcel.generic.Type;
+import org.codehaus.plexus.util.DirectoryScanner;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * The classes and members of a library which its consumers use, read from the constant pools, signatures and
+ * annotations of the consumer classes.
+ * <p>
+ * Members are indexed by name only, whatever class they are referenced through: a method called through a
+ * subclass is declared by one of its superclasses, and clirr matches changed overloads by name, so a member is
+ * used as soon as any member of that name is referenced. A class which a consumer extends or implements is used
+ * as a whole, since adding an abstract method to it breaks the consumer without being referenced. Constants
+ * which the compiler inlined into the consumers are not referenced, so the constant fields of the previous version
+ * of a used class are always compared, to report the constants which changed. A class which the consumers only
+ * take constants from is not referenced at all, and its constants are not compared.
+ *
+ * @since 2.9
+ */
+class UsageIndex {
+    private final Set<String> referencedClasses = new HashSet<String>();
+
+    private final Set<String> extendedClasses = new HashSet<String>();
+
+    private final Set<String> memberNames = new HashSet<String>();
+
+    private int classCount;
+
+    /**
+     * Reads the consumer classes from jar files and classes directories.
+     *
+     * @param files the jar files and directories of the consumers
+     */
+    public static UsageIndex scan(List<File> files) throws IOException {
+        UsageIndex index = new UsageIndex();
+        for (File file : files) {
+            if (file.isDirectory()) {
+                DirectoryScanner scanner = new DirectoryScanner();
+                scanner.setBasedir(file);
+                scanner.setIncludes(new String[] {"**/*.class"});
+                scanner.scan();
+                String[] classFiles = scanner.getIncludedFiles();
+                for (int i = 0; i < classFiles.length; i++) {
+                    index.add(new ClassParser(new File(file, classFiles[i]).getPath()).parse());
+                }
+            } else {
+                ZipFile zip = new ZipFile(file);
+                try {
+                    for (Enumeration entries = zip.entries(); entries.hasMoreElements(); ) {
+                        ZipEntry entry = (ZipEntry) entries.nextElement();
+                        if (!entry.isDirectory() && entry.getName().endsWith(".class")) {
+                            InputStream is = zip.getInputStream(entry);
+                            try {
+                                index.add(new ClassParser(is, entry.getName()).parse());
+                            } finally {
+                                IOUtil.close(is);
+                            }
+                        }
+                    }
+                } finally {
+                    zip.close();
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @return the number of consumer classes which have been read
+     */
+    public int getClassCount() {
+        return classCount;
+    }
+
+    /**
+     * @return the number of distinct member names which the consumers reference
+     */
+    public int getMemberNameCount() {
+        return memberNames.size();
+    }
+
+    /**
+     * Works out which library classes are used: those which the consumers reference, and their superclasses and
+     * interfaces, since consumers reference inherited members through the subclass.
+     *
+     * @param lookup finds both versions of a library class
+     * @return whether each used class is used as a whole, by class name
+     */
+    public Map<String, Boolean> findUsedClasses(ClassLookup lookup) {
+        Map<String, Boolean> usedClasses = new HashMap<String, Boolean>();
+        for (String className : referencedClasses) {
+            addUsedClass(usedClasses, className, extendedClasses.contains(className), lookup);
+        }
+        return usedClasses;
+    }
+
+    /**
+     * Leaves out the fields and methods whose names are not referenced, except for the fields which are constants
+     * in the previous version.
+     *
+     * @param pair the previous and the current version of a class, either of which may be null
+     */
+    public JavaType[] restrict(JavaType[] pair) {
+        Set<String> constantNames = new HashSet<String>();
+        if (pair[0] != null) {
+            Field[] fields = pair[0].getFields();
+            for (int i = 0; i < fields.length; i++) {
+                if (fields[i].isFinal() && fields[i].getConstantValue() != null) {
+                    constantNames.add(fields[i].getName());
+                }
+            }
+        }
+        return new JavaType[] {restrict(pair[0], constantNames), restrict(pair[1], constantNames)};
+    }
+
+    private JavaType restrict(JavaType type, Set<String> constantNames) {
+        if (type == null) {
+            return null;
+        }
+        List<Field> usedFields = new ArrayList<Field>();
+        Field[] fields = type.getFields();
+        for (int i = 0; i < fields.length; i++) {
+            if (memberNames.contains(fields[i].getName()) || constantNames.contains(fields[i].getName())) {
+                usedFields.add(fields[i]);
+            }
+        }
+        List<Method> usedMethods = new ArrayList<Method>();
+        Method[] methods = type.getMethods();
+        for (int i = 0; i < methods.length; i++) {
+            if (memberNames.contains(methods[i].getName())) {
+                usedMethods.add(methods[i]);
+            }
+        }
+        return new MemberView(
+                type,
+                usedFields.toArray(new Field[usedFields.size()]),
+                usedMethods.toArray(new Method[usedMethods.size()]));
+    }
+
+    private void addUsedClass(Map<String, Boolean> usedClasses, String className, boolean whole, ClassLookup lookup) {
+        Boolean used = usedClasses.get(className);
+        if (used != null && (used.booleanValue() || !whole)) {
+            return;
+        }
+        usedClasses.put(className, Boolean.valueOf(whole));
+        try {
+            JavaType[] versions = lookup.find(className);
+            for (int i = 0; i < versions.length; i++) {
+                if (versions[i] != null) {
+                    addUsedClasses(usedClasses, versions[i].getSuperClasses(), whole, lookup);
+                    addUsedClasses(usedClasses, versions[i].getAllInterfaces(), whole, lookup);
+                }
+            }
+        } catch (Exception e) {
+            // BCEL throws ClassNotFoundException without declaring it; a class which cannot be read or whose
+            // hierarchy is incomplete fails the comparison later on, and is reported then
+            if (!(e instanceof ClassNotFoundException || e instanceof CheckerException)) {
+                throw e;
+            }
+        }
+    }
+
+    private void addUsedClasses(Map<String, Boolean> usedClasses, JavaType[] types, boolean whole, ClassLookup lookup) {
+        for (int i = 0; i < types.length; i++) {
+            addUsedClass(usedClasses, types[i].getName(), whole, lookup);
+        }
+    }
+
+    private void add(JavaClass clazz) {
+        classCount++;
+
+        String superclassName = clazz.getSuperclassName();
+        if (superclassName != null) {
+            extendedClasses.add(superclassName);
+            referencedClasses.add(superclassName);
+        }
+        String[] interfaceNames = clazz.getInterfaceNames();
+        for (int i = 0; i < interfaceNames.length; i++) {
+            extendedClasses.add(interfaceNames[i]);
+            referencedClasses.add(interfaceNames[i]);
+        }
+
+        ConstantPool pool = clazz.getConstantPool();
+        for (int i = 1; i < pool.getLength(); i++) {
+            Constant constant = pool.getConstant(i);
+            if (constant instanceof ConstantClass) {
+                String name = ((ConstantClass) constant).getBytes(pool);
+                addType(name.startsWith("[") ? Type.getType(name) : new ObjectType(name.replace('/', '.')));
+            } else if (constant instanceof ConstantCP) {
+                ConstantCP ref = (ConstantCP) constant;
+                ConstantNameAndType nameAndType =
+                        (ConstantNameAndType) pool.getConstant(ref.getNameAndTypeIndex(), ConstantNameAndType.class);
+                memberNames.add(nameAndType.getName(pool));
+                addSignature(nameAndType.getSignature(pool));
+            }
+        }
+
+        addAnnotations(clazz.getAnnotationEntries());
+        addMembers(clazz.getFields());
+        addMembers(clazz.getMethods());
+    }
+
+    private void addMembers(FieldOrMethod[] members) {
+        for (int i = 0; i < members.length; i++) {
+            addSignature(members[i].getSignature());
+            addAnnotations(members[i].getAnnotationEntries());
+        }
+    }
+
+    private void addAnnotations(AnnotationEntry[] annotations) {
+        for (int i = 0; i < annotations.length; i++) {
+            addSignature(annotations[i].getAnnotationType());
+            ElementValuePair[] pairs = annotations[i].getElementValuePairs();
+            for (int j = 0; j < pairs.length; j++) {
+                memberNames.add(pairs[j].getNameString());
+            }
+        }
+    }
+
+    private void addSignature(String signature) {
+        if (signature.startsWith("(")) {
+            Type[] argumentTypes = Type.getArgumentTypes(signature);
+            for (int i = 0; i < argumentTypes.length; i++) {
+                addType(argumentTypes[i]);
+            }
+            addType(Type.getReturnType(signature));
+        } else {
+            addType(Type.getType(signature));
+        }
+    }
+
+    private void addType(Type type) {
+        if (type instanceof ArrayType) {
+            type = ((ArrayType) type).getBasicType();
+        }
+        if (type instanceof ObjectType) {
+            referencedClasses.add(((ObjectType) type).getClassName());
+        }
+    }
+
+    /**
+     * Finds both versions of a library class.
+     */
+    interface ClassLookup {
+        /**
+         * @return the previous and the current version of the class, either of which is null if it does not
+         *         exist
+         */
+        JavaType[] find(String className);
+    }
+}
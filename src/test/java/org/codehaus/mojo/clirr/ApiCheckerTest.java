@@ -0,0 +1,122 @@
+package org.codehaus.mojo.clirr;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sf.clirr.core.ApiDifference;
+import net.sf.clirr.core.Message;
+import net.sf.clirr.core.Severity;
+import net.sf.clirr.core.spi.JavaType;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ApiCheckerTest {
+    private static final int CLASSES = 40;
+
+    private static final int ERRORS_PER_CLASS = 3;
+
+    @Test
+    public void errorLimitStopsBetweenClasses() {
+        for (int threads = 1; threads <= 4; threads++) {
+            ClirrDiffListener listener = new ClirrDiffListener();
+            ApiChecker checker = createChecker(listener, threads);
+            checker.setErrorLimit(listener, 4);
+
+            checker.reportDiffs(classes(), classes());
+
+            assertTrue(checker.isAborted());
+            // the class which reaches the limit is reported whole
+            assertEquals(2 * ERRORS_PER_CLASS, listener.getSeverityCount(Severity.ERROR));
+            List<ApiDifference> reported = listener.getApiDifferences();
+            assertEquals("C00", reported.get(0).getAffectedClass());
+            assertEquals("C01", reported.get(reported.size() - 1).getAffectedClass());
+        }
+    }
+
+    @Test
+    public void everythingIsReportedBelowTheLimit() {
+        for (int threads = 1; threads <= 4; threads++) {
+            ClirrDiffListener listener = new ClirrDiffListener();
+            ApiChecker checker = createChecker(listener, threads);
+            checker.setErrorLimit(listener, CLASSES * ERRORS_PER_CLASS + 1);
+
+            checker.reportDiffs(classes(), classes());
+
+            assertFalse(checker.isAborted());
+            assertEquals(CLASSES * ERRORS_PER_CLASS, listener.getSeverityCount(Severity.ERROR));
+        }
+    }
+
+    /**
+     * Creates a checker which takes the differences of every class over, three errors each, so that the classes
+     * themselves are never looked at.
+     */
+    private static ApiChecker createChecker(ClirrDiffListener listener, int threads) {
+        ApiChecker checker = new ApiChecker(listener, threads);
+        Map<String, List<ApiDifference>> reused = new HashMap<String, List<ApiDifference>>();
+        for (int i = 0; i < CLASSES; i++) {
+            String className = name(i);
+            List<ApiDifference> differences = new ArrayList<ApiDifference>();
+            for (int j = 0; j < ERRORS_PER_CLASS; j++) {
+                differences.add(new ApiDifference(
+                        new Message(7002, false), Severity.ERROR, className, "void m" + j + "()", null, new String[0]));
+            }
+            reused.put(className, differences);
+        }
+        checker.setReusedDifferences(reused);
+        return checker;
+    }
+
+    private static JavaType[] classes() {
+        JavaType[] classes = new JavaType[CLASSES];
+        for (int i = 0; i < CLASSES; i++) {
+            classes[i] = type(name(i));
+        }
+        return classes;
+    }
+
+    private static String name(int i) {
+        return i < 10 ? "C0" + i : "C" + i;
+    }
+
+    /**
+     * @return a class which only has a name
+     */
+    private static JavaType type(final String name) {
+        return (JavaType) Proxy.newProxyInstance(
+                JavaType.class.getClassLoader(), new Class[] {JavaType.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("getName".equals(method.getName()) || "toString".equals(method.getName())) {
+                            return name;
+                        } else if ("hashCode".equals(method.getName())) {
+                            return Integer.valueOf(System.identityHashCode(proxy));
+                        } else if ("equals".equals(method.getName())) {
+                            return Boolean.valueOf(proxy == args[0]);
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
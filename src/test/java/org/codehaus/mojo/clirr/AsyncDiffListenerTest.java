@@ -0,0 +1,123 @@
+package org.codehaus.mojo.clirr;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.sf.clirr.core.ApiDifference;
+import net.sf.clirr.core.DiffListenerAdapter;
+import net.sf.clirr.core.Message;
+import net.sf.clirr.core.Severity;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AsyncDiffListenerTest {
+    @Test
+    public void stopWaitsForAllDifferences() {
+        RecordingListener recording = new RecordingListener(-1);
+        AsyncDiffListener listener = new AsyncDiffListener(recording, 2);
+        List<ApiDifference> reported = differences(50);
+
+        listener.start();
+        for (ApiDifference difference : reported) {
+            listener.reportDiff(difference);
+        }
+        listener.stop();
+
+        assertTrue(recording.stopped);
+        assertEquals(reported, recording.received);
+    }
+
+    @Test
+    public void failureOfTheListenerIsRethrown() {
+        RecordingListener recording = new RecordingListener(3);
+        AsyncDiffListener listener = new AsyncDiffListener(recording, 1);
+
+        listener.start();
+        try {
+            for (ApiDifference difference : differences(20)) {
+                listener.reportDiff(difference);
+            }
+        } catch (IllegalStateException e) {
+            assertSame(recording.failure, e);
+        }
+        try {
+            listener.stop();
+            fail("The failure of the listener has not been thrown");
+        } catch (IllegalStateException e) {
+            assertSame(recording.failure, e);
+        }
+
+        assertTrue(recording.stopped);
+        assertEquals(3, recording.received.size());
+    }
+
+    private static List<ApiDifference> differences(int count) {
+        List<ApiDifference> differences = new ArrayList<ApiDifference>();
+        for (int i = 0; i < count; i++) {
+            differences.add(new ApiDifference(
+                    new Message(7002, false),
+                    Severity.ERROR,
+                    "com.example.Api",
+                    "void m" + i + "()",
+                    null,
+                    new String[0]));
+        }
+        return differences;
+    }
+
+    /**
+     * Records the differences it gets, slowly, and fails on one of them.
+     */
+    private static final class RecordingListener extends DiffListenerAdapter {
+        private final int failAt;
+
+        final List<ApiDifference> received = Collections.synchronizedList(new ArrayList<ApiDifference>());
+
+        volatile RuntimeException failure;
+
+        volatile boolean stopped;
+
+        /**
+         * @param failAt the number of differences to get before failing, or -1, to never fail
+         */
+        RecordingListener(int failAt) {
+            this.failAt = failAt;
+        }
+
+        public void reportDiff(ApiDifference difference) {
+            if (received.size() == failAt) {
+                failure = new IllegalStateException("Cannot write " + difference);
+                throw failure;
+            }
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            received.add(difference);
+        }
+
+        public void stop() {
+            stopped = true;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.codehaus.mojo.clirr;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import net.sf.clirr.core.ApiDifference;
+import net.sf.clirr.core.DiffListener;
+import net.sf.clirr.core.DiffListenerAdapter;
+import net.sf.clirr.core.Message;
+import net.sf.clirr.core.Severity;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DelegatingListenerTest {
+    @Test
+    public void failureOfAQueuedListenerStillStopsTheOthers() {
+        StoppingListener failing = new StoppingListener(new IllegalStateException("Cannot write"), null);
+        StoppingListener writing = new StoppingListener(null, null);
+        DelegatingListener listener =
+                new DelegatingListener(Arrays.<DiffListener>asList(failing, writing), Severity.INFO, null);
+        listener.setQueueSize(1);
+
+        listener.start();
+        ApiDifference difference = new ApiDifference(
+                new Message(7002, false), Severity.ERROR, "com.example.Api", "void m()", null, new String[0]);
+        listener.reportDiff(difference);
+        try {
+            listener.stop();
+            fail("The failure of the listener has not been thrown");
+        } catch (IllegalStateException e) {
+            assertSame(failing.reportFailure, e);
+        }
+
+        assertTrue(failing.stopped);
+        assertTrue(writing.stopped);
+        assertEquals(Collections.singletonList(difference), writing.received);
+    }
+
+    @Test
+    public void firstFailureIsThrownOnceAllListenersAreStopped() {
+        StoppingListener first = new StoppingListener(null, new IllegalStateException("first"));
+        StoppingListener second = new StoppingListener(null, new IllegalArgumentException("second"));
+        StoppingListener third = new StoppingListener(null, null);
+        DelegatingListener listener =
+                new DelegatingListener(Arrays.<DiffListener>asList(first, second, third), Severity.INFO, null);
+
+        listener.start();
+        try {
+            listener.stop();
+            fail("The failure of the listener has not been thrown");
+        } catch (IllegalStateException e) {
+            assertSame(first.stopFailure, e);
+        }
+
+        assertTrue(first.stopped);
+        assertTrue(second.stopped);
+        assertTrue(third.stopped);
+    }
+
+    /**
+     * Records whether it has been stopped, and fails when it gets a difference or when it stops, if asked to.
+     */
+    private static final class StoppingListener extends DiffListenerAdapter {
+        private final RuntimeException reportFailure;
+
+        private final RuntimeException stopFailure;
+
+        final List<ApiDifference> received = Collections.synchronizedList(new ArrayList<ApiDifference>());
+
+        volatile boolean stopped;
+
+        StoppingListener(RuntimeException reportFailure, RuntimeException stopFailure) {
+            this.reportFailure = reportFailure;
+            this.stopFailure = stopFailure;
+        }
+
+        public void reportDiff(ApiDifference difference) {
+            if (reportFailure != null) {
+                throw reportFailure;
+            }
+            received.add(difference);
+        }
+
+        public void stop() {
+            stopped = true;
+            if (stopFailure != null) {
+                throw stopFailure;
+            }
+        }
+    }
+}
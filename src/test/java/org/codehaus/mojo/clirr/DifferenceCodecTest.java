@@ -0,0 +1,91 @@
+package org.codehaus.mojo.clirr;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import net.sf.clirr.core.ApiDifference;
+import net.sf.clirr.core.Message;
+import net.sf.clirr.core.Severity;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class DifferenceCodecTest {
+    @Test
+    public void roundTrip() {
+        ApiDifference difference = new ApiDifference(
+                new Message(7005, false),
+                Severity.ERROR,
+                Severity.WARNING,
+                "com.example.Api\tInner",
+                "public void run(java.lang.String\\n)",
+                null,
+                new String[] {"1", "a\tb\\c\nd\re", ""});
+
+        ApiDifference decoded = roundTrip(difference);
+
+        assertEquals(7005, decoded.getMessage().getId());
+        assertEquals(Severity.ERROR, decoded.getBinaryCompatibilitySeverity());
+        assertEquals(Severity.WARNING, decoded.getSourceCompatibilitySeverity());
+        assertEquals(difference.getAffectedClass(), decoded.getAffectedClass());
+        assertEquals(difference.getAffectedMethod(), decoded.getAffectedMethod());
+        assertNull(decoded.getAffectedField());
+        assertArrayEquals(
+                ApiDifferenceView.of(difference).getArguments(),
+                ApiDifferenceView.of(decoded).getArguments());
+    }
+
+    @Test
+    public void roundTripWithoutArguments() {
+        ApiDifference difference = new ApiDifference(
+                new Message(6002, false), Severity.INFO, "com.example.Api", null, "VALUE\\", new String[0]);
+
+        ApiDifference decoded = roundTrip(difference);
+
+        assertEquals(6002, decoded.getMessage().getId());
+        assertEquals(Severity.INFO, decoded.getMaximumSeverity());
+        assertNull(decoded.getAffectedMethod());
+        assertEquals("VALUE\\", decoded.getAffectedField());
+        assertEquals(0, ApiDifferenceView.of(decoded).getArguments().length);
+    }
+
+    @Test
+    public void encodedLineHasNoLineBreaks() {
+        ApiDifference difference = new ApiDifference(
+                new Message(7005, false), Severity.ERROR, "A\nB", "m\r\n", null, new String[] {"x\ny"});
+
+        String line = DifferenceCodec.encode(difference);
+
+        assertFalse(line.contains("\n"));
+        assertFalse(line.contains("\r"));
+    }
+
+    @Test
+    public void escapeAndUnescape() {
+        String[] values = {"", "plain", "\\", "\\t", "\t", "a\\\tb", "\n\r", "trailing\\\\"};
+        for (String value : values) {
+            String escaped = DifferenceCodec.escape(value);
+            assertFalse(escaped.contains("\t"));
+            assertEquals(value, DifferenceCodec.unescape(escaped));
+        }
+        assertEquals("a\\\\b\\tc", DifferenceCodec.escape("a\\b\tc"));
+    }
+
+    private static ApiDifference roundTrip(ApiDifference difference) {
+        return DifferenceCodec.decode(DifferenceCodec.split(DifferenceCodec.encode(difference)), 0);
+    }
+}
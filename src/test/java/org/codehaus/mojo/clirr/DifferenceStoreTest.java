@@ -0,0 +1,156 @@
+package org.codehaus.mojo.clirr;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import net.sf.clirr.core.ApiDifference;
+import net.sf.clirr.core.Message;
+import net.sf.clirr.core.Severity;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DifferenceStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void spillKeepsTheOrderOfEachSeverity() throws Exception {
+        File directory = new File(folder.getRoot(), "spill");
+        DifferenceStore store = new DifferenceStore();
+        store.setSpillThreshold(directory, 3);
+        List<ApiDifference> added = addDifferences(store, 20);
+
+        assertTrue(directory.list().length > 0);
+        assertEquals(20, store.size());
+
+        List<ApiDifference> expected = new ArrayList<ApiDifference>();
+        for (Severity severity : DifferenceStore.SEVERITIES) {
+            List<ApiDifference> ofSeverity = new ArrayList<ApiDifference>();
+            for (ApiDifference difference : added) {
+                if (severity.equals(difference.getMaximumSeverity())) {
+                    ofSeverity.add(difference);
+                }
+            }
+            assertEquals(describe(ofSeverity), describe(read(store.bySeverity(severity))));
+            expected.addAll(ofSeverity);
+        }
+        assertEquals(describe(expected), describe(read(store.bySeverity(null))));
+        store.close();
+    }
+
+    @Test
+    public void byClassMergesTheRuns() throws Exception {
+        DifferenceStore spilled = new DifferenceStore();
+        spilled.setSpillThreshold(new File(folder.getRoot(), "spill"), 4);
+        DifferenceStore inMemory = new DifferenceStore();
+        List<ApiDifference> added = addDifferences(spilled, 25);
+        for (ApiDifference difference : added) {
+            inMemory.add(difference);
+        }
+
+        List<String> expected = describe(read(inMemory.byClass()));
+        Collections.sort(added, new Comparator<ApiDifference>() {
+            public int compare(ApiDifference d1, ApiDifference d2) {
+                int cmp = d1.getAffectedClass().compareTo(d2.getAffectedClass());
+                if (cmp == 0) {
+                    cmp = member(d1).compareTo(member(d2));
+                }
+                if (cmp == 0) {
+                    cmp = DifferenceStore.indexOf(d1.getMaximumSeverity())
+                            - DifferenceStore.indexOf(d2.getMaximumSeverity());
+                }
+                return cmp;
+            }
+        });
+        assertEquals(describe(added), expected);
+        assertEquals(expected, describe(read(spilled.byClass())));
+        spilled.close();
+    }
+
+    @Test
+    public void closeDeletesTheRuns() throws Exception {
+        File directory = new File(folder.getRoot(), "spill");
+        DifferenceStore store = new DifferenceStore();
+        store.setSpillThreshold(directory, 2);
+        addDifferences(store, 10);
+        read(store.byClass());
+        assertTrue(directory.list().length > 0);
+
+        store.close();
+
+        assertEquals(0, directory.list().length);
+        assertEquals(0, store.size());
+        assertEquals(0, read(store.bySeverity(null)).size());
+    }
+
+    /**
+     * Adds differences with classes and members out of order, and severities taking turns.
+     */
+    private static List<ApiDifference> addDifferences(DifferenceStore store, int count) {
+        List<ApiDifference> added = new ArrayList<ApiDifference>();
+        for (int i = 0; i < count; i++) {
+            Severity severity = DifferenceStore.SEVERITIES[i % DifferenceStore.SEVERITIES.length];
+            String className = "com.example.C" + (i * 7 % 5);
+            ApiDifference difference = i % 2 == 0
+                    ? new ApiDifference(
+                            new Message(7002, false),
+                            severity,
+                            className,
+                            "void m" + (i * 3 % 4) + "()",
+                            null,
+                            new String[0])
+                    : new ApiDifference(new Message(6002, false), severity, className, null, "f" + i, new String[0]);
+            store.add(difference);
+            added.add(difference);
+        }
+        return added;
+    }
+
+    private static List<ApiDifference> read(DifferenceStore.Cursor cursor) {
+        List<ApiDifference> differences = new ArrayList<ApiDifference>();
+        try {
+            while (cursor.hasNext()) {
+                differences.add(cursor.next());
+            }
+        } finally {
+            cursor.close();
+        }
+        return differences;
+    }
+
+    private static List<String> describe(List<ApiDifference> differences) {
+        List<String> described = new ArrayList<String>();
+        for (ApiDifference difference : differences) {
+            described.add(difference.getMessage().getId() + " " + difference.getMaximumSeverity() + " "
+                    + difference.getAffectedClass() + " " + member(difference));
+        }
+        return described;
+    }
+
+    private static String member(ApiDifference difference) {
+        return difference.getAffectedMethod() != null
+                ? difference.getAffectedMethod()
+                : difference.getAffectedField() != null ? difference.getAffectedField() : "";
+    }
+}
@@ -0,0 +1,127 @@
+package org.codehaus.mojo.clirr;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Random;
+
+import org.codehaus.plexus.util.SelectorUtils;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class GlobMatcherTest {
+    private static final String[] PATTERNS = {
+        "**",
+        "*",
+        "com/example/Api",
+        "com/example/*",
+        "com/example/**",
+        "com/example/**/Api",
+        "**/Api",
+        "**/internal/**",
+        "com/*/Api",
+        "com/example/Api*",
+        "com/example/*Impl",
+        "com/example/A?i",
+        "com/example/*pi*",
+        "com/ex*le/Api",
+        "com\\example\\Api",
+        "com/example/",
+        "/com/example/Api",
+        "com//example/Api",
+        "com/example/**/",
+        "%ant[com/example/**]",
+        "%regex[com/example/.*]",
+        "%regex[com/example/[^/]*]",
+        "",
+    };
+
+    private static final String[] PATHS = {
+        "com/example/Api",
+        "com/example/ApiImpl",
+        "com/example/Api$Inner",
+        "com/example/internal/Api",
+        "com/example/internal/deep/Helper",
+        "com/other/Api",
+        "com/exampleX/Api",
+        "com/example",
+        "Api",
+        "com\\example\\Api",
+        "/com/example/Api",
+        "com/example/Api/",
+        "",
+    };
+
+    @Test
+    public void matchesLikeSelectorUtils() {
+        for (String pattern : PATTERNS) {
+            GlobMatcher matcher = GlobMatcher.compile(pattern);
+            for (String path : PATHS) {
+                assertEquals(
+                        pattern + " against " + path, SelectorUtils.matchPath(pattern, path), matcher.matches(path));
+            }
+        }
+    }
+
+    @Test
+    public void matchesClassNamesLikeTheirPaths() {
+        for (String pattern : PATTERNS) {
+            GlobMatcher matcher = GlobMatcher.compile(pattern);
+            for (String path : PATHS) {
+                if (path.indexOf('\\') >= 0) {
+                    continue;
+                }
+                String className = path.replace('/', '.');
+                assertEquals(
+                        pattern + " against " + className,
+                        SelectorUtils.matchPath(pattern, path),
+                        matcher.matchesClassName(className));
+            }
+        }
+    }
+
+    @Test
+    public void matchesRandomPathsLikeSelectorUtils() {
+        Random random = new Random(42);
+        String[] patternParts = {"a", "ab", "*", "**", "a*", "*b", "?", "a?", "*a*", ""};
+        String[] pathParts = {"a", "ab", "b", "ba", "aab", ""};
+        for (int i = 0; i < 20000; i++) {
+            String pattern = join(random, patternParts);
+            String path = join(random, pathParts);
+            assertEquals(
+                    pattern + " against " + path,
+                    SelectorUtils.matchPath(pattern, path),
+                    GlobMatcher.compile(pattern).matches(path));
+        }
+    }
+
+    @Test
+    public void noPatternNoMatcher() {
+        assertNull(GlobMatcher.compile(null));
+    }
+
+    private static String join(Random random, String[] parts) {
+        StringBuilder joined = new StringBuilder();
+        int count = 1 + random.nextInt(4);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                joined.append('/');
+            }
+            joined.append(parts[random.nextInt(parts.length)]);
+        }
+        return joined.toString();
+    }
+}
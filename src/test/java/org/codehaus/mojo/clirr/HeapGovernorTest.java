@@ -0,0 +1,50 @@
+package org.codehaus.mojo.clirr;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class HeapGovernorTest {
+    @Test
+    public void parsesBytes() {
+        assertEquals(123L, HeapGovernor.parseSize("123"));
+        assertEquals(0L, HeapGovernor.parseSize("0"));
+    }
+
+    @Test
+    public void parsesUnits() {
+        assertEquals(64L * 1024, HeapGovernor.parseSize("64k"));
+        assertEquals(512L * 1024 * 1024, HeapGovernor.parseSize("512m"));
+        assertEquals(2L * 1024 * 1024 * 1024, HeapGovernor.parseSize("2g"));
+    }
+
+    @Test
+    public void ignoresCaseAndBlanks() {
+        assertEquals(512L * 1024 * 1024, HeapGovernor.parseSize(" 512M "));
+        assertEquals(3L * 1024 * 1024 * 1024, HeapGovernor.parseSize("3 G"));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void rejectsUnknownUnits() {
+        HeapGovernor.parseSize("1t");
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void rejectsMissingNumber() {
+        HeapGovernor.parseSize("m");
+    }
+}
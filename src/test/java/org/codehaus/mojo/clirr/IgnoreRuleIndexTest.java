@@ -0,0 +1,155 @@
+package org.codehaus.mojo.clirr;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.sf.clirr.core.ApiDifference;
+import net.sf.clirr.core.Message;
+import net.sf.clirr.core.Severity;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class IgnoreRuleIndexTest {
+    private static final String[] PATTERNS = {
+        "**",
+        "com/example/**",
+        "com/example/Api",
+        "com/example/*",
+        "com/example/internal/**",
+        "com/*/Api",
+        "com/example/Api*",
+        "com/example/A?i",
+        "org/**",
+        "%regex[com\\.example\\..*]",
+        "%regex[com/example/.*]",
+        "%ant[com/example/**]",
+        "com//example/Api",
+        "com/example",
+        "**/Api",
+    };
+
+    private static final String[] CLASSES = {
+        "com.example.Api",
+        "com.example.ApiImpl",
+        "com.example.internal.Helper",
+        "com.other.Api",
+        "com.exampleX.Api",
+        "org.example.Api",
+        "Api",
+    };
+
+    @Test
+    public void prefixStopsBeforeTheDirectoryOfTheFirstWildcard() {
+        assertEquals("", IgnoreRuleIndex.getPrefix("**"));
+        assertEquals("", IgnoreRuleIndex.getPrefix(null));
+        assertEquals("com/example", IgnoreRuleIndex.getPrefix("com/example/**"));
+        assertEquals("com/example", IgnoreRuleIndex.getPrefix("com/example/Api"));
+        assertEquals("com/example", IgnoreRuleIndex.getPrefix("com/example/Api*"));
+        assertEquals("com", IgnoreRuleIndex.getPrefix("com/*/Api"));
+        assertEquals("com/example", IgnoreRuleIndex.getPrefix("%ant[com/example/**]"));
+        assertEquals("", IgnoreRuleIndex.getPrefix("%regex[com/example/.*]"));
+        assertEquals("", IgnoreRuleIndex.getPrefix("com//example/Api"));
+    }
+
+    @Test
+    public void candidatesIncludeEveryMatchingRuleInOrder() {
+        List<Difference> rules = new ArrayList<Difference>();
+        for (int i = 0; i < PATTERNS.length; i++) {
+            rules.add(rule(8001, PATTERNS[i]));
+            // rules which cannot match, and gaps, must not disturb the order
+            rules.add(i % 3 == 0 ? null : rule(8000, PATTERNS[i]));
+        }
+        IgnoreRuleIndex index = new IgnoreRuleIndex(rules);
+
+        for (String className : CLASSES) {
+            ApiDifferenceView view = ApiDifferenceView.of(removedClass(className));
+            int[] candidates = index.getCandidates(view);
+
+            int[] sorted = candidates.clone();
+            Arrays.sort(sorted);
+            assertArrayEquals(className, sorted, candidates);
+
+            List<Integer> matching = new ArrayList<Integer>();
+            for (int i = 0; i < rules.size(); i++) {
+                Difference rule = rules.get(i);
+                if (rule != null && rule.matches(view).getCode() == Difference.Result.MATCHED) {
+                    matching.add(i);
+                }
+            }
+            List<Integer> matchingCandidates = new ArrayList<Integer>();
+            for (int candidate : candidates) {
+                if (rules.get(candidate).matches(view).getCode() == Difference.Result.MATCHED) {
+                    matchingCandidates.add(candidate);
+                }
+            }
+            assertEquals(className, matching, matchingCandidates);
+            assertTrue(className, !matching.isEmpty());
+        }
+    }
+
+    @Test
+    public void firstMatchIsTheSameAsWithoutIndex() {
+        List<Difference> rules = new ArrayList<Difference>();
+        for (int i = PATTERNS.length - 1; i >= 0; i--) {
+            rules.add(rule(8001, PATTERNS[i]));
+        }
+        IgnoreRuleIndex index = new IgnoreRuleIndex(rules);
+
+        for (String className : CLASSES) {
+            ApiDifferenceView view = ApiDifferenceView.of(removedClass(className));
+            Difference expected = null;
+            for (Difference rule : rules) {
+                if (rule.matches(view).getCode() == Difference.Result.MATCHED) {
+                    expected = rule;
+                    break;
+                }
+            }
+            Difference actual = null;
+            for (int candidate : index.getCandidates(view)) {
+                if (rules.get(candidate).matches(view).getCode() == Difference.Result.MATCHED) {
+                    actual = rules.get(candidate);
+                    break;
+                }
+            }
+            assertSame(className, expected, actual);
+        }
+    }
+
+    @Test
+    public void otherTypesHaveNoCandidates() {
+        IgnoreRuleIndex index = new IgnoreRuleIndex(Arrays.asList(rule(8001, "**")));
+        ApiDifference added = new ApiDifference(
+                new Message(8000, false), Severity.INFO, "com.example.Api", null, null, new String[0]);
+        assertEquals(0, index.getCandidates(ApiDifferenceView.of(added)).length);
+    }
+
+    private static Difference rule(int type, String className) {
+        Difference rule = new Difference();
+        rule.setDifferenceType(type);
+        rule.setClassName(className);
+        return rule;
+    }
+
+    private static ApiDifference removedClass(String className) {
+        return new ApiDifference(new Message(8001, false), Severity.ERROR, className, null, null, new String[0]);
+    }
+}
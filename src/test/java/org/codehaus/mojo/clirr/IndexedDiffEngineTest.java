@@ -0,0 +1,161 @@
+package org.codehaus.mojo.clirr;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import net.sf.clirr.core.ApiDifference;
+import net.sf.clirr.core.ClassFilter;
+import net.sf.clirr.core.DiffListenerAdapter;
+import net.sf.clirr.core.Severity;
+import net.sf.clirr.core.spi.JavaType;
+import org.apache.bcel.classfile.JavaClass;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNotNull;
+
+public class IndexedDiffEngineTest {
+    private static final String[] PREVIOUS = {
+        "p/A.java",
+        "package p; public class A {"
+                + " public int f; public static final int C = 1; protected String g; public Object kept;"
+                + " public void m() {} public void m(int i) {} public void m(String s) {} public int r() { return 0; }"
+                + " public static void s() {} public final void fin() {} protected void prot() {}"
+                + " private void priv() {} public void gone() {} public void same(int a, long b) {} }",
+        "p/I.java",
+        "package p; public interface I { void a(); int b(); }",
+        "p/B.java",
+        "package p; public abstract class B implements I { public abstract void x(); public void y(String s) {} }",
+        "p/C.java",
+        "package p; public class C extends B { public void a() {} public int b() { return 0; }"
+                + " public void x() {} public class Inner { public void q() {} } }",
+        "p/D.java",
+        "package p; public class D { public D() {} public D(int i) {} protected void hook() {} }",
+    };
+
+    private static final String[] CURRENT = {
+        "p/A.java",
+        "package p; public class A {"
+                + " public long f; public static final int C = 2; public String g; public Object kept; public int h;"
+                + " public void m() {} public void m(long i) {} public void m(String s) {} public long r() { return 0; }"
+                + " public void s() {} public void fin() {} public void prot() {}"
+                + " private void priv2() {} public void added() {} public void same(int a, long b) {} }",
+        "p/I.java",
+        "package p; public interface I { void a(); int b(); void c(); }",
+        "p/B.java",
+        "package p; public abstract class B implements I, java.io.Serializable { public abstract void x();"
+                + " public abstract void z(); public void y(Object s) {} }",
+        "p/C.java",
+        "package p; public class C extends B { public void a() {} public int b() { return 0; } public void c() {}"
+                + " public void x() {} public void z() {} public class Inner { public void q2() {} } }",
+        "p/D.java",
+        "package p; public final class D { public D() {} void hook() {} }",
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void reportsTheSameDifferencesAsClirr() throws Exception {
+        File previous = compile("previous", PREVIOUS);
+        File current = compile("current", CURRENT);
+
+        for (Severity minSeverity : new Severity[] {null, Severity.WARNING, Severity.ERROR}) {
+            List<String> clirr = compare(new ClirrDiffEngine(), previous, current, minSeverity);
+            List<String> indexed = compare(new IndexedDiffEngine(), previous, current, minSeverity);
+
+            assertEquals("Differences from " + minSeverity, clirr, indexed);
+            assertTrue(clirr.size() > 0);
+        }
+        assertTrue(compare(new IndexedDiffEngine(), previous, current, null).size() > 15);
+    }
+
+    @Test
+    public void reportsNothingForTheSameClasses() throws Exception {
+        File previous = compile("previous", PREVIOUS);
+
+        assertEquals(Collections.<String>emptyList(), compare(new IndexedDiffEngine(), previous, previous, null));
+    }
+
+    private File compile(String name, String[] sources) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assumeNotNull(compiler);
+
+        File sourceDirectory = folder.newFolder(name + "-sources");
+        File classesDirectory = folder.newFolder(name);
+        List<String> arguments = new ArrayList<String>(
+                Arrays.asList("-nowarn", "-source", "8", "-target", "8", "-d", classesDirectory.getPath()));
+        for (int i = 0; i < sources.length; i += 2) {
+            File source = new File(sourceDirectory, sources[i]);
+            source.getParentFile().mkdirs();
+            FileUtils.fileWrite(source, "UTF-8", sources[i + 1]);
+            arguments.add(source.getPath());
+        }
+        assertEquals(0, compiler.run(null, null, null, arguments.toArray(new String[arguments.size()])));
+        return classesDirectory;
+    }
+
+    /**
+     * @return the differences, described with everything the report shows, sorted
+     */
+    private static List<String> compare(DiffEngine engine, File previous, File current, Severity minSeverity)
+            throws Exception {
+        final List<String> differences = new ArrayList<String>();
+        ApiChecker checker = new ApiChecker(
+                new DiffListenerAdapter() {
+                    public void reportDiff(ApiDifference difference) {
+                        differences.add(difference.getMessage().getId() + " "
+                                + difference.getBinaryCompatibilitySeverity() + "/"
+                                + difference.getSourceCompatibilitySeverity() + " "
+                                + difference.getAffectedClass() + ": "
+                                + ApiDifferenceView.of(difference).getReport());
+                    }
+                },
+                1,
+                minSeverity);
+        checker.setEngine(engine);
+        checker.reportDiffs(read(previous), read(current));
+        assertEquals(Collections.emptyMap(), checker.getFailures());
+        Collections.sort(differences);
+        return differences;
+    }
+
+    private static JavaType[] read(File classes) throws Exception {
+        ClassFilter all = new ClassFilter() {
+            public boolean isSelected(JavaClass clazz) {
+                return true;
+            }
+        };
+        ClassSource source = ClassSource.forDirectory(classes, ClassLoader.getSystemClassLoader(), all);
+        try {
+            return source.toArray();
+        } finally {
+            source.close();
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package org.codehaus.mojo.clirr;
+
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SchedulerTest {
+    @Test
+    public void windowIsBoundedBySize() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        Scheduler.Window<Integer> window = Scheduler.window(2, 2);
+        try {
+            assertTrue(window.isEmpty());
+            window.submit(await(release, 1));
+            assertFalse(window.isFull());
+            window.submit(await(release, 2));
+            assertTrue(window.isFull());
+            try {
+                window.submit(await(release, 3));
+                fail("a full window must not take another task");
+            } catch (IllegalStateException e) {
+                // expected
+            }
+            release.countDown();
+            assertEquals(Integer.valueOf(1), window.take());
+            assertFalse(window.isFull());
+        } finally {
+            release.countDown();
+            window.cancel();
+        }
+    }
+
+    @Test
+    public void resultsAreTakenInSubmissionOrder() throws Exception {
+        final CountDownLatch firstMayFinish = new CountDownLatch(1);
+        Scheduler.Window<Integer> window = Scheduler.window(2, 2);
+        try {
+            window.submit(await(firstMayFinish, 1));
+            window.submit(new Callable<Integer>() {
+                public Integer call() {
+                    firstMayFinish.countDown();
+                    return 2;
+                }
+            });
+            assertEquals(Integer.valueOf(1), window.take());
+            assertEquals(Integer.valueOf(2), window.take());
+            assertTrue(window.isEmpty());
+        } finally {
+            window.cancel();
+        }
+    }
+
+    @Test
+    public void tasksInFlightAreBoundedByWindow() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        Scheduler.Window<Integer> window = Scheduler.window(4, 2);
+        try {
+            for (int i = 0; i < 20; i++) {
+                if (window.isFull()) {
+                    window.take();
+                }
+                window.submit(new Callable<Integer>() {
+                    public Integer call() throws InterruptedException {
+                        int now = running.incrementAndGet();
+                        synchronized (maxRunning) {
+                            maxRunning.set(Math.max(maxRunning.get(), now));
+                        }
+                        Thread.sleep(5);
+                        running.decrementAndGet();
+                        return now;
+                    }
+                });
+            }
+            while (!window.isEmpty()) {
+                window.take();
+            }
+        } finally {
+            window.cancel();
+        }
+        assertTrue("at most 2 tasks ran at once, not " + maxRunning.get(), maxRunning.get() <= 2);
+    }
+
+    @Test
+    public void checkedExceptionsArePassedOn() throws Exception {
+        Scheduler.Window<Integer> window = Scheduler.window(1, 1);
+        try {
+            window.submit(new Callable<Integer>() {
+                public Integer call() throws IOException {
+                    throw new IOException("broken");
+                }
+            });
+            window.take();
+            fail("the exception of the task must be passed on");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+            assertEquals("broken", e.getCause().getMessage());
+        } finally {
+            window.cancel();
+        }
+    }
+
+    @Test
+    public void runtimeExceptionsArePassedOn() throws Exception {
+        Scheduler.Window<Integer> window = Scheduler.window(1, 1);
+        try {
+            window.submit(new Callable<Integer>() {
+                public Integer call() {
+                    throw new IllegalArgumentException("bad");
+                }
+            });
+            window.take();
+            fail("the exception of the task must be passed on");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        } finally {
+            window.cancel();
+        }
+    }
+
+    @Test
+    public void poolGrowsForCallersAskingForMore() {
+        ForkJoinPool pool = Scheduler.getPool(1);
+        int parallelism = pool.getParallelism();
+        ForkJoinPool larger = Scheduler.getPool(parallelism + 1);
+        assertEquals(parallelism + 1, larger.getParallelism());
+        assertSame(larger, Scheduler.getPool(1));
+        assertSame(larger, Scheduler.getPool(parallelism + 1));
+    }
+
+    @Test
+    public void tasksOfReplacedPoolComplete() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        Scheduler.Window<Integer> window = Scheduler.window(1, 1);
+        try {
+            window.submit(await(release, 7));
+            Scheduler.getPool(Scheduler.getPool(1).getParallelism() + 1);
+            release.countDown();
+            assertEquals(Integer.valueOf(7), window.take());
+            window.submit(await(release, 8));
+            assertEquals(Integer.valueOf(8), window.take());
+        } finally {
+            release.countDown();
+            window.cancel();
+        }
+    }
+
+    private static Callable<Integer> await(final CountDownLatch latch, final int result) {
+        return new Callable<Integer>() {
+            public Integer call() throws InterruptedException {
+                latch.await(10, TimeUnit.SECONDS);
+                return result;
+            }
+        };
+    }
+}